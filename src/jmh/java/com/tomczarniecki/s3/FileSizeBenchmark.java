@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats sizes from several threads at once, as uploads and listings do, with the
+ * integer based {@link FileSize} and with a DecimalFormat that is shared under a lock.
+ * Add {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class FileSizeBenchmark {
+
+    private static final int SIZES = 1024;
+
+    private final DecimalFormat decimalFormat = new DecimalFormat(",##0.0");
+    private long[] sizes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        sizes = new long[SIZES];
+        for (int i = 0; i < SIZES; i++) {
+            sizes[i] = (long) Math.pow(2, random.nextDouble() * 40);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        final StringBuilder out = new StringBuilder(32);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZES)
+    public void sharedDecimalFormat(Blackhole bh) {
+        for (long size : sizes) {
+            bh.consume(formatWithDecimalFormat(size));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZES)
+    public void fileSize(Blackhole bh) {
+        for (long size : sizes) {
+            bh.consume(FileSize.format(size));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZES)
+    public void fileSizeIntoBuilder(Buffer buffer, Blackhole bh) {
+        for (long size : sizes) {
+            buffer.out.setLength(0);
+            bh.consume(FileSize.format(size, buffer.out));
+        }
+    }
+
+    private String formatWithDecimalFormat(long size) {
+        long[] units = {1L << 30, 1L << 20, 1L << 10};
+        String[] names = {" GB", " MB", " KB"};
+        for (int i = 0; i < units.length; i++) {
+            if (size / units[i] > 0) {
+                synchronized (decimalFormat) {
+                    return decimalFormat.format(((double) size) / units[i]) + names[i];
+                }
+            }
+        }
+        return size + " bytes";
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.FileSize;
+import org.joda.time.LocalDateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats the size and last modified columns of a million listed objects, both the way
+ * S3Object used to on every call and through {@link CellFormat}.
+ * <p>
+ * The listing benchmarks format every row once. The repaint benchmarks format the same
+ * screenful of rows over and over, as scrolling back and forth does.
+ * Add {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CellFormatBenchmark {
+
+    private static final String PATTERN = "yyyy/MM/dd HH:mm:ss";
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"40"})
+    public int visibleRows;
+
+    private long[] sizes;
+    private long[] times;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        sizes = new long[rows];
+        times = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            // anything from a few bytes to a few gigabytes
+            sizes[i] = (long) Math.pow(2, random.nextDouble() * 32);
+            times[i] = now - (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(3 * 365));
+        }
+    }
+
+    @Benchmark
+    public void formatListingEagerly(Blackhole bh) {
+        for (int i = 0; i < rows; i++) {
+            formatEagerly(i, bh);
+        }
+    }
+
+    @Benchmark
+    public void formatListingOnRender(Blackhole bh) {
+        for (int i = 0; i < rows; i++) {
+            formatOnRender(i, bh);
+        }
+    }
+
+    @Benchmark
+    public void repaintEagerly(Blackhole bh) {
+        for (int i = 0; i < rows; i++) {
+            formatEagerly(i % visibleRows, bh);
+        }
+    }
+
+    @Benchmark
+    public void repaintOnRender(Blackhole bh) {
+        for (int i = 0; i < rows; i++) {
+            formatOnRender(i % visibleRows, bh);
+        }
+    }
+
+    private void formatEagerly(int row, Blackhole bh) {
+        bh.consume(FileSize.format(sizes[row]));
+        bh.consume(new LocalDateTime(times[row]).toString(PATTERN));
+    }
+
+    private void formatOnRender(int row, Blackhole bh) {
+        bh.consume(CellFormat.size(sizes[row]));
+        bh.consume(CellFormat.lastModified(times[row]));
+    }
+}
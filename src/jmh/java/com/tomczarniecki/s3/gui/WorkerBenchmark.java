@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.tests.LocalService;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires a burst of listings and existence checks at the local stand-in service through
+ * {@link DropBoxWorker}, as a bulk operation would, on platform and on virtual threads.
+ * <p>
+ * Each call sleeps for {@code latencyMillis} afterwards to stand in for the S3 round trip.
+ * The virtual mode needs JDK 21 or later. Add {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WorkerBenchmark {
+
+    private static final int OBJECTS = 100;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"500"})
+    public int tasks;
+
+    @Param({"0", "20"})
+    public int latencyMillis;
+
+    private LocalService service;
+    private DropBoxWorker worker;
+    private String bucketName;
+
+    @Setup
+    public void setUp() throws Exception {
+        boolean virtual = threads.equals("virtual");
+        if (virtual && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("Virtual threads need JDK 21 or later");
+        }
+        worker = DropBoxWorker.create(virtual);
+        service = new LocalService();
+        bucketName = "bench-" + UUID.randomUUID();
+        service.createBucket(bucketName, null);
+        File source = File.createTempFile("bench", ".txt");
+        FileUtils.writeStringToFile(source, "benchmark");
+        for (int i = 0; i < OBJECTS; i++) {
+            service.createObject(bucketName, "object-" + i, source, null);
+        }
+        FileUtils.deleteQuietly(source);
+    }
+
+    @TearDown
+    public void tearDown() {
+        worker.shutdown();
+        for (int i = 0; i < OBJECTS; i++) {
+            service.deleteObject(bucketName, "object-" + i);
+        }
+        service.deleteBucket(bucketName);
+    }
+
+    @Benchmark
+    public void listAndCheckObjects() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            String objectKey = "object-" + (i % OBJECTS);
+            worker.executeInBackground(() -> {
+                try {
+                    service.listObjectKeys(bucketName, "object-1");
+                    service.objectExists(bucketName, objectKey);
+                    if (latencyMillis > 0) {
+                        Thread.sleep(latencyMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
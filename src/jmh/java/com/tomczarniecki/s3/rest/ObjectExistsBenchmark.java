@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old listing based existence check with the HEAD based one.
+ * <p>
+ * Needs a local S3 stand-in (e.g. MinIO) configured through AWS_ENDPOINT in the file
+ * given by the {@code s3dropbox.config} system property, or in {@code ~/.s3dropbox}.
+ * The {@code keysReturned} counter shows how many summaries each listing probe pulls down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ObjectExistsBenchmark {
+
+    @Param({"10", "1000"})
+    public int siblings;
+
+    private AmazonS3 client;
+    private WebClientService service;
+    private String bucketName;
+
+    @Setup
+    public void setUp() {
+        String location = System.getProperty("s3dropbox.config");
+        Configuration config = new ConfigurationFactory(location != null ? new File(location) : null).load();
+        if (config.getEndpointConfiguration() == null) {
+            throw new IllegalStateException("Set AWS_ENDPOINT to a local S3 stand-in before running this benchmark");
+        }
+        client = WebClientService.createClient(config);
+        service = new WebClientService(config);
+        bucketName = "bench-" + UUID.randomUUID();
+        client.createBucket(bucketName);
+        // directory-like key whose prefix also matches all of its children
+        client.putObject(bucketName, "folder", "");
+        for (int i = 0; i < siblings; i++) {
+            client.putObject(bucketName, "folder/child-" + i, "");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ObjectListing listing = client.listObjects(bucketName);
+        while (true) {
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                client.deleteObject(bucketName, summary.getKey());
+            }
+            if (!listing.isTruncated()) {
+                break;
+            }
+            listing = client.listNextBatchOfObjects(listing);
+        }
+        client.deleteBucket(bucketName);
+        service.close();
+        client.shutdown();
+    }
+
+    @Benchmark
+    public boolean listBasedExists(Payload payload) {
+        ObjectListing listing = client.listObjects(bucketName, "folder");
+        payload.keysReturned += listing.getObjectSummaries().size();
+        for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+            if (summary.getKey().equals("folder")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean headBasedExists() {
+        return service.objectExists(bucketName, "folder");
+    }
+
+    @Benchmark
+    public boolean headBasedMissing() {
+        return service.objectExists(bucketName, "folder/missing");
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+
+        public long keysReturned;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            keysReturned = 0;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Remembers folder listings for a while so that expanding the same folder twice
+ * does not go back to S3. Listings are dropped when they expire, when there are too
+ * many of them, or when an upload or delete changes a key that they cover.
+ */
+public class CachingService implements Service, ListingCache {
+
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final int DEFAULT_MAX_LISTINGS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, Listing> listings;
+    private final Service delegate;
+    private final long ttlMillis;
+
+    private long generation;
+
+    public CachingService(Service delegate) {
+        this(delegate, DEFAULT_TTL_MILLIS, DEFAULT_MAX_LISTINGS);
+    }
+
+    public CachingService(Service delegate, long ttlMillis, final int maxListings) {
+        this.listings = new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size() > maxListings;
+            }
+        };
+        this.delegate = delegate;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public S3List listItemsInBucket(String bucketName, String prefix) {
+        String key = bucketName + DELIMITER + prefix;
+        S3List items = cachedListing(key);
+        if (items == null) {
+            long started = currentGeneration();
+            items = delegate.listItemsInBucket(bucketName, prefix);
+            cacheListing(key, items, started);
+        }
+        return items;
+    }
+
+    @Override
+    public void listItemsInBucket(String bucketName, String prefix, ListingListener listener) {
+        String key = bucketName + DELIMITER + prefix;
+        S3List items = cachedListing(key);
+        if (items != null) {
+            listener.pageLoaded(items, true);
+            return;
+        }
+        long started = currentGeneration();
+        List<String> folders = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        delegate.listItemsInBucket(bucketName, prefix, (page, lastPage) -> {
+            folders.addAll(page.getFolders());
+            files.addAll(page.getFiles());
+            listener.pageLoaded(page, lastPage);
+        });
+        cacheListing(key, new S3List(folders, files), started);
+    }
+
+    @Override
+    public void clearCachedListings(String bucketName) {
+        invalidate(bucketName, null);
+    }
+
+    @Override
+    public void createObject(String bucketName, String objectKey, File source, ProgressListener listener) {
+        try {
+            delegate.createObject(bucketName, objectKey, source, listener);
+        } finally {
+            invalidate(bucketName, objectKey);
+        }
+    }
+
+    @Override
+    public void deleteObject(String bucketName, String objectKey) {
+        try {
+            delegate.deleteObject(bucketName, objectKey);
+        } finally {
+            invalidate(bucketName, objectKey);
+        }
+    }
+
+    @Override
+    public Map<String, String> deleteObjects(String bucketName, Collection<String> objectKeys) {
+        try {
+            return delegate.deleteObjects(bucketName, objectKeys);
+        } finally {
+            // cheaper than working out every prefix that the keys were listed under
+            invalidate(bucketName, null);
+        }
+    }
+
+    @Override
+    public S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener) {
+        try {
+            return delegate.deleteObjectsUnder(bucketName, prefix, listener);
+        } finally {
+            invalidate(bucketName, null);
+        }
+    }
+
+    @Override
+    public void deleteBucket(String bucketName) {
+        try {
+            delegate.deleteBucket(bucketName);
+        } finally {
+            invalidate(bucketName, null);
+        }
+    }
+
+    @Override
+    public List<String> bucketRegions() {
+        return delegate.bucketRegions();
+    }
+
+    @Override
+    public boolean isCreateBucketsAllowed() {
+        return delegate.isCreateBucketsAllowed();
+    }
+
+    @Override
+    public List<S3Bucket> listAllMyBuckets() {
+        return delegate.listAllMyBuckets();
+    }
+
+    @Override
+    public boolean bucketExists(String bucketName) {
+        return delegate.bucketExists(bucketName);
+    }
+
+    @Override
+    public void createBucket(String bucketName, String region) {
+        delegate.createBucket(bucketName, region);
+    }
+
+    @Override
+    public S3ObjectList listObjectsInBucket(String bucketName, String nextMarker) {
+        return delegate.listObjectsInBucket(bucketName, nextMarker);
+    }
+
+    @Override
+    public Stream<S3Object> streamObjectsInBucket(String bucketName, String prefix) {
+        return delegate.streamObjectsInBucket(bucketName, prefix);
+    }
+
+    @Override
+    public boolean objectExists(String bucketName, String objectKey) {
+        return delegate.objectExists(bucketName, objectKey);
+    }
+
+    @Override
+    public Set<String> listObjectKeys(String bucketName, String prefix) {
+        return delegate.listObjectKeys(bucketName, prefix);
+    }
+
+    @Override
+    public String getPublicUrl(String bucketName, String objectKey, DateTime expires) {
+        return delegate.getPublicUrl(bucketName, objectKey, expires);
+    }
+
+    @Override
+    public void downloadObject(String bucketName, String objectKey, File target, ProgressListener listener) {
+        delegate.downloadObject(bucketName, objectKey, target, listener);
+    }
+
+    @Override
+    public S3Object getObject(String bucketName, String objectKey) {
+        return delegate.getObject(bucketName, objectKey);
+    }
+
+    @Override
+    public void removeFailedUploads(String bucketName) {
+        delegate.removeFailedUploads(bucketName);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            listings.clear();
+        }
+        delegate.close();
+    }
+
+    private synchronized S3List cachedListing(String key) {
+        Listing listing = listings.get(key);
+        if (listing != null && listing.expires > DateTimeUtils.currentTimeMillis()) {
+            logger.debug("Cached listing for {}", key);
+            return listing.items;
+        }
+        listings.remove(key);
+        return null;
+    }
+
+    private synchronized long currentGeneration() {
+        return generation;
+    }
+
+    private synchronized void cacheListing(String key, S3List items, long started) {
+        // an upload or delete that finished while we were listing may not be in these items
+        if (started == generation) {
+            listings.put(key, new Listing(items, DateTimeUtils.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * Drops the listings of every folder that holds the object key, or the whole bucket when it is null.
+     */
+    private synchronized void invalidate(String bucketName, String objectKey) {
+        generation++;
+        String bucketKey = bucketName + DELIMITER;
+        Iterator<String> keys = listings.keySet().iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (key.startsWith(bucketKey)) {
+                String prefix = key.substring(bucketKey.length());
+                if (objectKey == null || objectKey.startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    private static class Listing {
+
+        private final S3List items;
+        private final long expires;
+
+        public Listing(S3List items, long expires) {
+            this.items = items;
+            this.expires = expires;
+        }
+    }
+}
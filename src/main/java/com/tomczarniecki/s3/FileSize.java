@@ -29,38 +29,59 @@ package com.tomczarniecki.s3;
 
 import org.apache.commons.io.FileUtils;
 
-import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.List;
-
-import static com.tomczarniecki.s3.Pair.pair;
-
+/**
+ * Formats byte counts the way a {@code ",##0.0"} DecimalFormat would, rounding half even,
+ * but with integer arithmetic only. Each thread appends into its own builder, so this can
+ * be called from any number of upload and listing threads at once.
+ */
 public class FileSize {
 
-    private static final FileSize INSTANCE = new FileSize();
+    private static final long[] UNITS = {FileUtils.ONE_GB, FileUtils.ONE_MB, FileUtils.ONE_KB};
+    private static final String[] UNIT_NAMES = {" GB", " MB", " KB"};
 
-    private final List<Pair<String, Long>> sizes;
-    private final DecimalFormat format;
-
-    private FileSize() {
-        sizes = new ArrayList<>();
-        sizes.add(pair("GB", FileUtils.ONE_GB));
-        sizes.add(pair("MB", FileUtils.ONE_MB));
-        sizes.add(pair("KB", FileUtils.ONE_KB));
-        format = new DecimalFormat(",##0.0");
-    }
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(32));
 
     public static String format(long size) {
-        return INSTANCE.fmt(size);
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        return format(size, buffer).toString();
     }
 
-    private String fmt(long size) {
-        for (Pair<String, Long> entry : sizes) {
-            if (size / entry.getRight() > 0) {
-                double value = ((double) size) / ((double) entry.getRight());
-                return format.format(value) + " " + entry.getLeft();
+    /**
+     * Appends the formatted size without allocating anything along the way.
+     */
+    public static StringBuilder format(long size, StringBuilder out) {
+        for (int i = 0; i < UNITS.length; i++) {
+            long unit = UNITS[i];
+            if (size / unit > 0) {
+                long tenths = roundedTenths(size, unit);
+                appendGrouped(out, tenths / 10);
+                return out.append('.').append((char) ('0' + tenths % 10)).append(UNIT_NAMES[i]);
             }
         }
-        return size + " bytes";
+        return out.append(size).append(" bytes");
+    }
+
+    private static long roundedTenths(long size, long unit) {
+        long remainder = (size % unit) * 10;
+        long tenths = (size / unit) * 10 + remainder / unit;
+        long left = (remainder % unit) * 2;
+        if (left > unit || (left == unit && tenths % 2 != 0)) {
+            tenths++;
+        }
+        return tenths;
+    }
+
+    private static void appendGrouped(StringBuilder out, long value) {
+        if (value < 1000) {
+            out.append(value);
+            return;
+        }
+        appendGrouped(out, value / 1000);
+        int group = (int) (value % 1000);
+        out.append(',');
+        out.append((char) ('0' + group / 100));
+        out.append((char) ('0' + group / 10 % 10));
+        out.append((char) ('0' + group % 10));
     }
 }
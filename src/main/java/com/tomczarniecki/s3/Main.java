@@ -89,12 +89,14 @@ public class Main implements Runnable {
 
     public void run() {
         ensureConfigurationExists();
-        final Service service = new WebClientService(configuration);
-        DropBox box = new DropBox(service, prefs);
+        final CachingService service = new CachingService(new WebClientService(configuration));
+        final DropBox box = new DropBox(service, service, prefs);
         box.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         box.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
+                box.setVisible(false);
+                box.close();
                 service.close();
                 System.exit(0);
             }
@@ -52,4 +52,20 @@ public class PreferenceSetter {
     public void setTreeView(boolean treeView) {
         prefs.putBoolean("treeView", treeView);
     }
+
+    public int getUploadThreads() {
+        return prefs.getInt("uploadThreads", 4);
+    }
+
+    public void setUploadThreads(int uploadThreads) {
+        prefs.putInt("uploadThreads", uploadThreads);
+    }
+
+    public boolean isVirtualThreads() {
+        return prefs.getBoolean("virtualThreads", false);
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        prefs.putBoolean("virtualThreads", virtualThreads);
+    }
 }
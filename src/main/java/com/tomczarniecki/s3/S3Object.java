@@ -28,15 +28,18 @@
  */
 package com.tomczarniecki.s3;
 
-import org.joda.time.LocalDateTime;
+import org.joda.time.DateTime;
 
 public class S3Object implements Comparable<S3Object> {
 
     private final String key;
     private final long size;
-    private final LocalDateTime lastModified;
+    private final long lastModified;
 
-    public S3Object(String key, long size, LocalDateTime lastModified) {
+    /**
+     * @param lastModified milliseconds since the epoch
+     */
+    public S3Object(String key, long size, long lastModified) {
         this.key = key;
         this.size = size;
         this.lastModified = lastModified;
@@ -46,12 +49,15 @@ public class S3Object implements Comparable<S3Object> {
         return key;
     }
 
-    public String getSize() {
-        return FileSize.format(size);
+    public long getSize() {
+        return size;
     }
 
-    public String getLastModified() {
-        return lastModified.toString("yyyy/MM/dd HH:mm:ss");
+    /**
+     * @return milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
     }
 
     public int compareTo(S3Object other) {
@@ -59,6 +65,6 @@ public class S3Object implements Comparable<S3Object> {
     }
 
     public String toString() {
-        return String.format("S3Object[%s,%d,%s]", key, size, lastModified.toString());
+        return String.format("S3Object[%s,%d,%s]", key, size, new DateTime(lastModified));
     }
 }
@@ -31,7 +31,11 @@ package com.tomczarniecki.s3;
 import org.joda.time.DateTime;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface Service {
 
@@ -49,12 +53,28 @@ public interface Service {
 
     void deleteBucket(String bucketName);
 
+    /**
+     * Objects come back in the order that S3 lists them, which is by key in UTF-8 binary order.
+     */
     S3ObjectList listObjectsInBucket(String bucketName, String nextMarker);
 
+    /**
+     * Every object under the prefix, in key order, fetched a page at a time as the stream is consumed.
+     * Close the stream when done with it.
+     */
+    Stream<S3Object> streamObjectsInBucket(String bucketName, String prefix);
+
     S3List listItemsInBucket(String bucketName, String prefix);
 
+    /**
+     * Hands over the folders and files under the prefix one page at a time, as S3 returns them.
+     */
+    void listItemsInBucket(String bucketName, String prefix, ListingListener listener);
+
     boolean objectExists(String bucketName, String objectKey);
 
+    Set<String> listObjectKeys(String bucketName, String prefix);
+
     String getPublicUrl(String bucketName, String objectKey, DateTime expires);
 
     void createObject(String bucketName, String objectKey, File source, ProgressListener listener);
@@ -65,6 +85,22 @@ public interface Service {
 
     void deleteObject(String bucketName, String objectKey);
 
+    /**
+     * Deletes many objects with as few requests as possible. Keys that cannot be deleted
+     * don't stop the rest from going.
+     *
+     * @return keys that were not deleted, with the reason why
+     */
+    Map<String, String> deleteObjects(String bucketName, Collection<String> objectKeys);
+
+    /**
+     * Deletes every object under the prefix, or the whole bucket's worth for an empty prefix,
+     * deleting each page of the listing while the next one is fetched. The listener is told
+     * how many objects are done out of those listed so far. Gives up early when S3 refuses
+     * a whole request's worth of objects.
+     */
+    S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener);
+
     void removeFailedUploads(String bucketName);
 
     void close();
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.FileSize;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.function.LongFunction;
+
+/**
+ * Turns raw object sizes and timestamps into the text that gets displayed.
+ * <p>
+ * Each kind of value has a small direct mapped cache of recently formatted text, so
+ * repainting the rows in view finds what it needs there rather than formatting it again.
+ * Cache entries are immutable and replaced whole, so this can be used from any thread.
+ */
+class CellFormat {
+
+    private static final DateTimeFormatter LAST_MODIFIED = DateTimeFormat.forPattern("yyyy/MM/dd HH:mm:ss");
+
+    private static final Cache SIZES = new Cache(FileSize::format);
+    private static final Cache SECONDS = new Cache(seconds -> LAST_MODIFIED.print(seconds * 1000));
+
+    public static String size(long bytes) {
+        return SIZES.get(bytes);
+    }
+
+    public static String lastModified(long millis) {
+        // only whole seconds are displayed
+        return SECONDS.get(Math.floorDiv(millis, 1000));
+    }
+
+    private static class Cache {
+
+        private static final int SLOT_BITS = 10;
+
+        private final Entry[] entries = new Entry[1 << SLOT_BITS];
+        private final LongFunction<String> format;
+
+        Cache(LongFunction<String> format) {
+            this.format = format;
+        }
+
+        String get(long value) {
+            int slot = (int) ((value * 0x9E3779B97F4A7C15L) >>> (64 - SLOT_BITS));
+            Entry entry = entries[slot];
+            if (entry == null || entry.value != value) {
+                entry = new Entry(value, format.apply(value));
+                entries[slot] = entry;
+            }
+            return entry.text;
+        }
+    }
+
+    private static class Entry {
+
+        final long value;
+        final String text;
+
+        Entry(long value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+    }
+}
@@ -33,6 +33,7 @@ public class Constants {
     public static final String ALL_BUCKETS = "all my buckets";
     public static final String BACK_LINK = "..";
     public static final String MORE_LINK = "<more>";
+    public static final String LOADING_LINK = "loading ...";
 
     public static final String MAIN_WINDOW_NAME = "dropBoxMainWindow";
     public static final String MAIN_TABLE_NAME = "dropBoxMainTable";
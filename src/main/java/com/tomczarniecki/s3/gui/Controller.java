@@ -29,11 +29,14 @@ package com.tomczarniecki.s3.gui;
 
 import com.tomczarniecki.s3.ProgressListener;
 import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3DeleteResult;
 import com.tomczarniecki.s3.S3Object;
 import org.joda.time.DateTime;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface Controller {
 
@@ -65,17 +68,37 @@ public interface Controller {
 
     String getSelectedObjectKey();
 
+    /**
+     * @return keys of all selected objects, {@link #getSelectedObjectKey()} is just the first of them
+     */
+    List<String> getSelectedObjectKeys();
+
     void getSelectedObject(Callback callback);
 
     boolean objectExists(String bucketName, String objectKey);
 
+    Set<String> listObjectKeys(String bucketName, String prefix);
+
     void createObject(String bucketName, String objectKey, File sourceFile, ProgressListener listener);
 
     void downloadCurrentObject(File targetFile, ProgressListener listener);
 
     String getPublicUrlForCurrentObject(DateTime expires);
 
-    void deleteCurrentObject();
+    /**
+     * Deletes exactly the given keys, which the user has confirmed, whatever has been
+     * selected since.
+     *
+     * @return keys that were not deleted, with the reason why
+     */
+    Map<String, String> deleteObjects(String bucketName, List<String> objectKeys);
+
+    /**
+     * Deletes everything under the prefix, an empty prefix empties the bucket.
+     *
+     * @return keys that were not deleted, with the reason why
+     */
+    S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener);
 
     interface Callback {
         void selectedObject(S3Object object);
@@ -76,7 +76,7 @@ class DeleteBucketAction extends AbstractAction {
 
     private void deleteError() {
         worker.executeOnEventLoop(() -> {
-            String text = "Cannot delete bucket %s.\nPlease make sure that it is empty and try again.";
+            String text = "Cannot delete bucket %s.\nPlease make sure that it is empty (Buckets > Empty Bucket) and try again.";
             display.showErrorMessage("Delete failed", String.format(text, controller.getSelectedBucketName()));
         });
     }
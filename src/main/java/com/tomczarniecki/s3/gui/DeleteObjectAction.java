@@ -28,36 +28,90 @@
  */
 package com.tomczarniecki.s3.gui;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.swing.AbstractAction;
 import java.awt.event.ActionEvent;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 class DeleteObjectAction extends AbstractAction {
 
+    private static final int MAX_FAILURES_SHOWN = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     private final Controller controller;
     private final Executor executor;
     private final Display display;
+    private final SwingWorker worker;
 
-    public DeleteObjectAction(Controller controller, Display display, Executor executor) {
+    public DeleteObjectAction(Controller controller, Display display, Executor executor, SwingWorker worker) {
         super("Delete File");
         this.controller = controller;
         this.executor = executor;
         this.display = display;
+        this.worker = worker;
     }
 
     public void actionPerformed(ActionEvent e) {
-        if (controller.isObjectSelected() && confirmDeletion()) {
-            deleteObject();
+        if (controller.isObjectSelected()) {
+            // the selection can change while the user thinks about it, delete what they saw
+            String bucketName = controller.getSelectedBucketName();
+            List<String> keys = controller.getSelectedObjectKeys();
+            if (!keys.isEmpty() && confirmDeletion(bucketName, keys)) {
+                deleteObjects(bucketName, keys);
+            }
         }
     }
 
-    private void deleteObject() {
-        executor.execute(controller::deleteCurrentObject);
+    private void deleteObjects(String bucketName, List<String> keys) {
+        executor.execute(() -> {
+            try {
+                Map<String, String> failures = controller.deleteObjects(bucketName, keys);
+                if (!failures.isEmpty()) {
+                    logger.info("Failed to delete {} files from bucket {}", failures.size(), bucketName);
+                    deleteError(bucketName, failures);
+                }
+            } catch (Exception e) {
+                logger.info("Delete failed", e);
+                deleteError(bucketName);
+            }
+        });
     }
 
-    private boolean confirmDeletion() {
-        String text = "Are you sure that you want to delete file %s from bucket %s?\nYou will not be able to undo this action.";
-        String message = String.format(text, controller.getSelectedObjectKey(), controller.getSelectedBucketName());
+    private boolean confirmDeletion(String bucketName, List<String> keys) {
+        String message;
+        if (keys.size() == 1) {
+            String text = "Are you sure that you want to delete file %s from bucket %s?\nYou will not be able to undo this action.";
+            message = String.format(text, keys.get(0), bucketName);
+        } else {
+            String text = "Are you sure that you want to delete %d files from bucket %s?\nYou will not be able to undo this action.";
+            message = String.format(text, keys.size(), bucketName);
+        }
         return display.confirmMessage("Just Checking", message);
     }
+
+    private void deleteError(String bucketName) {
+        worker.executeOnEventLoop(() -> {
+            String text = "Cannot delete files from bucket %s.\nPlease try again.";
+            display.showErrorMessage("Delete failed", String.format(text, bucketName));
+        });
+    }
+
+    private void deleteError(String bucketName, Map<String, String> failures) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Cannot delete %d files from bucket %s:\n", failures.size(), bucketName));
+        int shown = 0;
+        for (Map.Entry<String, String> entry : failures.entrySet()) {
+            if (shown++ == MAX_FAILURES_SHOWN) {
+                text.append(String.format("... and %d more\n", failures.size() - MAX_FAILURES_SHOWN));
+                break;
+            }
+            text.append(entry.getKey()).append(" (").append(entry.getValue()).append(")\n");
+        }
+        worker.executeOnEventLoop(() -> display.showErrorMessage("Delete failed", text.toString()));
+    }
 }
@@ -27,21 +27,23 @@
  */
 package com.tomczarniecki.s3.gui;
 
+import com.tomczarniecki.s3.ListingCache;
 import com.tomczarniecki.s3.PreferenceSetter;
 import com.tomczarniecki.s3.Service;
 
+import javax.swing.ButtonGroup;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTree;
 import javax.swing.ListSelectionModel;
-import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableColumn;
+import javax.swing.tree.TreeSelectionModel;
 import java.awt.event.ActionListener;
 import java.beans.EventHandler;
 import java.util.concurrent.Executor;
@@ -56,28 +58,33 @@ public class DropBox extends JFrame {
     private final DualController controller;
     private final DownloadWorker downloader;
     private final UploadWorker uploader;
+    private final PurgeWorker purger;
     private final Executor executor;
     private final DualLayout layout;
     private final Display display;
-    private final Worker worker;
+    private final DropBoxWorker worker;
 
-    public DropBox(Service service, PreferenceSetter prefs) {
+    public DropBox(Service service, ListingCache cache, PreferenceSetter prefs) {
         super(String.format(FOLDER_NAME, ALL_BUCKETS));
         setName(MAIN_WINDOW_NAME);
 
         display = new Display(this);
-        worker = new DropBoxWorker();
+        worker = DropBoxWorker.create(prefs.isVirtualThreads());
+        worker.setBusyListener(() -> display.showErrorMessage("Too busy",
+                "Too much is already waiting to be done in the background.\nPlease wait a bit and try again."));
         executor = new BusyCursorExecutor(display, worker);
 
         TableController tableCtrl = new TableController(service, worker);
-        TreeController treeCtrl = new TreeController(service, worker, executor);
+        TreeController treeCtrl = new TreeController(service, cache, worker, executor, new RefreshCoalescer());
 
         controller = new DualController(treeCtrl, tableCtrl);
         layout = new DualLayout(controller, createTable(tableCtrl), createTree(treeCtrl));
         layout.show(prefs.isTreeView());
 
         uploader = new UploadWorker(controller, display, worker);
+        uploader.setConcurrency(prefs.getUploadThreads());
         downloader = new DownloadWorker(controller, display, worker);
+        purger = new PurgeWorker(controller, display, worker);
 
         JMenu objectMenu = createObjectMenu();
         JMenu bucketMenu = createBucketMenu(service);
@@ -97,26 +104,23 @@ public class DropBox extends JFrame {
     private JTable createTable(TableController controller) {
         JTable table = new JTable(controller.getModel());
         table.setName(MAIN_TABLE_NAME);
+        table.setRowSorter(new DropBoxRowSorter(controller.getModel()));
 
         TableColumn iconColumn = table.getColumnModel().getColumn(0);
         iconColumn.setMaxWidth(16);
         iconColumn.setPreferredWidth(16);
 
         TableColumn sizeColumn = table.getColumnModel().getColumn(2);
-        DefaultTableCellRenderer sizeRenderer = new DefaultTableCellRenderer();
-        sizeRenderer.setHorizontalAlignment(JLabel.RIGHT);
-        sizeColumn.setCellRenderer(sizeRenderer);
+        sizeColumn.setCellRenderer(new FormattedCellRenderer(CellFormat::size));
         sizeColumn.setMaxWidth(100);
         sizeColumn.setPreferredWidth(100);
 
         TableColumn dateColumn = table.getColumnModel().getColumn(3);
-        DefaultTableCellRenderer dateRenderer = new DefaultTableCellRenderer();
-        dateRenderer.setHorizontalAlignment(JLabel.RIGHT);
-        dateColumn.setCellRenderer(dateRenderer);
+        dateColumn.setCellRenderer(new FormattedCellRenderer(CellFormat::lastModified));
         dateColumn.setMaxWidth(150);
         dateColumn.setPreferredWidth(150);
 
-        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         table.getSelectionModel().addListSelectionListener(new DropBoxTableListener(controller, table));
 
         table.addMouseListener(new DoubleClickListener(controller, executor));
@@ -130,6 +134,7 @@ public class DropBox extends JFrame {
         tree.addMouseListener(createRightClickListener(controller));
         tree.addTreeWillExpandListener(controller);
         tree.addTreeSelectionListener(controller);
+        tree.getSelectionModel().setSelectionMode(TreeSelectionModel.DISCONTIGUOUS_TREE_SELECTION);
         tree.setShowsRootHandles(true);
         tree.setRootVisible(false);
         return tree;
@@ -139,7 +144,7 @@ public class DropBox extends JFrame {
         JMenuBar menuBar = new JMenuBar();
         menuBar.add(bucketMenu);
         menuBar.add(objectMenu);
-        menuBar.add(toolsMenu());
+        menuBar.add(toolsMenu(prefs));
         menuBar.add(viewMenu(prefs));
         return menuBar;
     }
@@ -150,6 +155,7 @@ public class DropBox extends JFrame {
             menu.add(new JMenuItem(new CreateBucketAction(controller, display, executor)));
             menu.add(new JMenuItem(new DeleteBucketAction(controller, display, executor, worker)));
         }
+        menu.add(new JMenuItem(new EmptyBucketAction(controller, display, purger)));
         menu.add(new JMenuItem(new RefreshBucketsAction(controller, executor)));
         return menu;
     }
@@ -160,18 +166,44 @@ public class DropBox extends JFrame {
         menu.add(new JMenuItem(new UploadFileAction(display, listener)));
         menu.add(new JMenuItem(new CreatePublicLinkAction(controller, display)));
         menu.add(new JMenuItem(new DownloadObjectAction(controller, display, downloader)));
-        menu.add(new JMenuItem(new DeleteObjectAction(controller, display, executor)));
+        menu.add(new JMenuItem(new DeleteObjectAction(controller, display, executor, worker)));
+        menu.add(new JMenuItem(new DeleteFolderAction(controller, display, purger)));
         menu.add(new JMenuItem(new RefreshObjectsAction(controller, executor)));
         menu.setVisible(false);
         return menu;
     }
 
-    private JMenu toolsMenu() {
+    private JMenu toolsMenu(PreferenceSetter prefs) {
         JMenu menu = new JMenu("Tools");
         menu.add(new JMenuItem(new RemoveFailedUploadsAction(controller, display, worker)));
+        menu.add(uploadThreadsMenu(prefs));
+        menu.add(virtualThreadsItem(prefs));
         return menu;
     }
 
+    private JMenu uploadThreadsMenu(PreferenceSetter prefs) {
+        JMenu menu = new JMenu("Parallel Uploads");
+        ButtonGroup group = new ButtonGroup();
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(String.valueOf(threads));
+            item.setSelected(threads == uploader.getConcurrency());
+            item.addActionListener(e -> {
+                uploader.setConcurrency(threads);
+                prefs.setUploadThreads(threads);
+            });
+            group.add(item);
+            menu.add(item);
+        }
+        return menu;
+    }
+
+    private JCheckBoxMenuItem virtualThreadsItem(PreferenceSetter prefs) {
+        JCheckBoxMenuItem item = new JCheckBoxMenuItem("Virtual Threads (on restart)", prefs.isVirtualThreads());
+        item.addActionListener(EventHandler.create(ActionListener.class, prefs, "virtualThreads", "source.selected"));
+        item.setEnabled(VirtualThreads.isSupported());
+        return item;
+    }
+
     private JMenu viewMenu(PreferenceSetter prefs) {
         JCheckBoxMenuItem darkMode = new JCheckBoxMenuItem("Dark Mode (on restart)", prefs.isDarkMode());
         darkMode.addActionListener(EventHandler.create(ActionListener.class, prefs, "darkMode", "source.selected"));
@@ -194,7 +226,7 @@ public class DropBox extends JFrame {
         listener.addAction(new ShowDetailsAction(controller, display, executor, worker));
         listener.addAction(new CreatePublicLinkAction(controller, display));
         listener.addAction(new DownloadObjectAction(controller, display, downloader));
-        listener.addAction(new DeleteObjectAction(controller, display, executor));
+        listener.addAction(new DeleteObjectAction(controller, display, executor, worker));
         return listener;
     }
 
@@ -202,4 +234,11 @@ public class DropBox extends JFrame {
         setVisible(true);
         executor.execute(controller::refreshBuckets);
     }
+
+    /**
+     * Lets background work wind down, call this before closing the service it uses.
+     */
+    public void close() {
+        worker.shutdown();
+    }
 }
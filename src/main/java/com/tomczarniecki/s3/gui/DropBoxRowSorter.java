@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Leaves the rows in the order that S3 listed them until a column header is clicked,
+ * and then sorts the rows' model indices by comparing the model's raw column values.
+ * The back and more links stay at the top and bottom, and rows whose page is still being
+ * listed again wait after the sorted ones until it arrives.
+ * <p>
+ * Clicking the same header goes from ascending to descending and back to listing order.
+ * Showing another listing also goes back to listing order.
+ */
+class DropBoxRowSorter extends RowSorter<DropBoxTableModel> {
+
+    private final DropBoxTableModel model;
+
+    private List<SortKey> sortKeys = Collections.emptyList();
+    private int[] viewToModel;
+    private int[] modelToView;
+    private int modelRowCount;
+
+    public DropBoxRowSorter(DropBoxTableModel model) {
+        this.model = model;
+        this.modelRowCount = model.getRowCount();
+    }
+
+    @Override
+    public DropBoxTableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        if (column == DropBoxTableModel.Column.ICON.ordinal()) {
+            return;
+        }
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column) {
+            order = (sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING)
+                    ? SortOrder.DESCENDING : SortOrder.UNSORTED;
+        }
+        if (order == SortOrder.UNSORTED) {
+            setSortKeys(null);
+        } else {
+            setSortKeys(Collections.singletonList(new SortKey(column, order)));
+        }
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * Only the first key is used, rows that compare equal stay in listing order.
+     */
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = Collections.emptyList();
+        if (keys != null && !keys.isEmpty() && keys.get(0).getSortOrder() != SortOrder.UNSORTED) {
+            newKeys = Collections.singletonList(keys.get(0));
+        }
+        if (!newKeys.equals(sortKeys)) {
+            sortKeys = newKeys;
+            fireSortOrderChanged();
+            sort();
+            model.setKeepAllPages(isSorted());
+        }
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            return checkedIndex(index);
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (modelToView == null) {
+            return checkedIndex(index);
+        }
+        if (index < 0 || index >= modelToView.length) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        }
+        return modelToView[index];
+    }
+
+    private int checkedIndex(int index) {
+        if (index < 0 || index >= model.getRowCount()) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        }
+        return index;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return (viewToModel != null) ? viewToModel.length : model.getRowCount();
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        allRowsChanged();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        if (isSorted()) {
+            setSortKeys(null);
+        } else {
+            modelRowCount = model.getRowCount();
+        }
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        rowsChanged();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        rowsChanged();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        rowsChanged();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rowsChanged();
+    }
+
+    private void rowsChanged() {
+        if (isSorted()) {
+            sort();
+        } else {
+            modelRowCount = model.getRowCount();
+        }
+    }
+
+    private boolean isSorted() {
+        return !sortKeys.isEmpty();
+    }
+
+    private void sort() {
+        int[] previous = (viewToModel != null) ? viewToModel : identity(modelRowCount);
+        modelRowCount = model.getRowCount();
+        if (isSorted()) {
+            SortKey key = sortKeys.get(0);
+            int column = key.getColumn();
+            int direction = (key.getSortOrder() == SortOrder.DESCENDING) ? -1 : 1;
+            viewToModel = sortedRows(modelRowCount, (a, b) -> direction * model.compareRows(column, a, b));
+            modelToView = new int[modelRowCount];
+            for (int i = 0; i < viewToModel.length; i++) {
+                modelToView[viewToModel[i]] = i;
+            }
+        } else {
+            viewToModel = null;
+            modelToView = null;
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    private int[] sortedRows(int rowCount, IntBinaryOperator comparator) {
+        int[] comparable = new int[rowCount];
+        int[] waiting = new int[rowCount];
+        int comparableCount = 0;
+        int waitingCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (model.isPinnedRow(row)) {
+                continue;
+            }
+            if (model.isComparableRow(row)) {
+                comparable[comparableCount++] = row;
+            } else {
+                waiting[waitingCount++] = row;
+            }
+        }
+        mergeSort(comparable, new int[comparableCount], 0, comparableCount, comparator);
+
+        int[] rows = new int[rowCount];
+        int next = 0;
+        if (rowCount > 0 && model.isPinnedRow(0)) {
+            rows[next++] = 0;
+        }
+        System.arraycopy(comparable, 0, rows, next, comparableCount);
+        next += comparableCount;
+        System.arraycopy(waiting, 0, rows, next, waitingCount);
+        next += waitingCount;
+        for (int row = 1; row < rowCount; row++) {
+            if (model.isPinnedRow(row)) {
+                rows[next++] = row;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Stable, so that rows which compare equal keep their listing order.
+     */
+    private static void mergeSort(int[] rows, int[] scratch, int from, int to, IntBinaryOperator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(rows, scratch, from, middle, comparator);
+        mergeSort(rows, scratch, middle, to, comparator);
+        if (comparator.applyAsInt(rows[middle - 1], rows[middle]) <= 0) {
+            return; // already in order
+        }
+        System.arraycopy(rows, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && comparator.applyAsInt(scratch[left], scratch[right]) <= 0)) {
+                rows[i] = scratch[left++];
+            } else {
+                rows[i] = scratch[right++];
+            }
+        }
+    }
+
+    private static int[] identity(int rowCount) {
+        int[] rows = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+}
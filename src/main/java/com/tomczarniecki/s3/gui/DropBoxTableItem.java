@@ -32,6 +32,4 @@ import javax.swing.Icon;
 class DropBoxTableItem {
     Icon icon;
     String name = "";
-    String size = "";
-    String lastModified = "";
 }
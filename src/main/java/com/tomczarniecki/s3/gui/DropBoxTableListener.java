@@ -43,9 +43,18 @@ class DropBoxTableListener implements ListSelectionListener {
 
     public void valueChanged(ListSelectionEvent evt) {
         if (!evt.getValueIsAdjusting()) {
-            int index = table.getSelectedRow();
-            if (index >= 0) {
-                controller.updateSelectedName(index);
+            int lead = table.getSelectedRow();
+            if (lead >= 0) {
+                int[] selected = table.getSelectedRows();
+                int[] rows = new int[selected.length];
+                rows[0] = table.convertRowIndexToModel(lead);
+                int next = 1;
+                for (int index : selected) {
+                    if (index != lead && next < rows.length) {
+                        rows[next++] = table.convertRowIndexToModel(index);
+                    }
+                }
+                controller.updateSelectedNames(rows);
             }
         }
     }
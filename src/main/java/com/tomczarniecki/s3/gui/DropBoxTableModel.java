@@ -39,19 +39,86 @@ import javax.swing.table.AbstractTableModel;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Objects are kept in the pages that they were listed in. Only the pages nearest to the
+ * rows being painted keep their items, the rest just remember where they were listed from
+ * and are listed again when they are scrolled back into view. The next page is asked for
+ * when the more link gets painted, so it loads as the user scrolls down to it.
+ * <p>
+ * Loaded pages hold their objects in {@link ObjectRows}. Sizes and timestamps are given
+ * out as raw numbers and only turned into text by the table's renderers, so that very
+ * large listings don't keep a few strings per row.
+ * <p>
+ * Rows stay in the order that S3 listed them, {@link DropBoxRowSorter} sorts the view
+ * using {@link #compareRows} when a column header is clicked.
+ * <p>
+ * Each page holds the keys after its marker up to and including the next page's marker,
+ * so uploaded and deleted objects can be put into or taken out of the page they belong in
+ * without listing anything again. Pages are listed again in as many goes as it takes to
+ * fill that range, and grow or shrink to match.
+ * <p>
+ * Everything apart from the constructor is expected to run on the event loop.
+ */
 class DropBoxTableModel extends AbstractTableModel {
 
-    private final List<DropBoxTableItem> items = new ArrayList<>();
+    public static final int DEFAULT_LOADED_PAGES = 10;
+
+    interface PageLoader {
+
+        /**
+         * Appends the next page through {@link #updatedObjects}, or runs the given callback
+         * when it cannot be listed.
+         */
+        void loadNextPage(Runnable failed);
+
+        void loadPage(String marker, PageCallback callback);
+
+        interface PageCallback {
+
+            void pageLoaded(S3ObjectList list);
+
+            void pageFailed();
+        }
+    }
+
+    private final List<DropBoxTableItem> bucketItems = new ArrayList<>();
+    private final List<Page> pages = new ArrayList<>();
+    private final Map<String, String> prefixPool = new ConcurrentHashMap<>();
+
+    private final DropBoxTableItem backLink;
+    private final DropBoxTableItem moreLink;
+    private final DropBoxTableItem loadingItem;
 
     private final Icon bucketIcon;
     private final Icon objectIcon;
     private final SwingWorker worker;
+    private final PageLoader loader;
+    private final int maxLoadedPages;
+
+    private String objectsBucketName;
+    private boolean showingObjects;
+    private boolean truncated;
+    private boolean loadingNextPage;
+    private boolean keepAllPages;
+    private int objectCount;
+    private int loadedPages;
+    private int lastUsedPage;
+    private int generation;
+
+    public DropBoxTableModel(SwingWorker worker, PageLoader loader) {
+        this(worker, loader, DEFAULT_LOADED_PAGES);
+    }
 
-    public DropBoxTableModel(SwingWorker worker) {
+    public DropBoxTableModel(SwingWorker worker, PageLoader loader, int maxLoadedPages) {
         try {
             this.worker = worker;
+            this.loader = loader;
+            this.maxLoadedPages = Math.max(2, maxLoadedPages);
 
             FileSystemView fsv = FileSystemView.getFileSystemView();
             File file = File.createTempFile(getClass().getSimpleName(), ".txt");
@@ -62,10 +129,16 @@ class DropBoxTableModel extends AbstractTableModel {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        backLink = linkItem(Constants.BACK_LINK);
+        moreLink = linkItem(Constants.MORE_LINK);
+        loadingItem = linkItem(Constants.LOADING_LINK);
     }
 
     public int getRowCount() {
-        return items.size();
+        if (!showingObjects) {
+            return bucketItems.size();
+        }
+        return 1 + objectCount + (truncated ? 1 : 0);
     }
 
     public int getColumnCount() {
@@ -91,69 +164,443 @@ class DropBoxTableModel extends AbstractTableModel {
     }
 
     public Class<?> getColumnClass(int columnIndex) {
-        return (column(columnIndex) == Column.ICON) ? Icon.class : String.class;
+        return column(columnIndex).type;
     }
 
+    /**
+     * Painting a row of a page that has been forgotten lists that page again, and painting
+     * the more link lists the next page, so this can start I/O in the background. Each page
+     * is listed only once at a time, and one that fails is tried again when next painted.
+     */
     public Object getValueAt(int rowIndex, int columnIndex) {
-        DropBoxTableItem item = items.get(rowIndex);
-        return column(columnIndex).valueAt(item);
+        Column column = column(columnIndex);
+        if (isObjectRow(rowIndex)) {
+            Page page = pageAt(rowIndex);
+            int index = rowIndex - page.firstRow;
+            if (page.isLoaded(index)) {
+                return column.valueAt(page.rows, index, objectIcon);
+            }
+            return column.valueAt(loadingItem);
+        }
+        return column.valueAt(itemAt(rowIndex));
     }
 
-    public String getNameAt(int index) {
-        return items.get(index).name;
+    public String getNameAt(int rowIndex) {
+        if (isObjectRow(rowIndex)) {
+            Page page = pageAt(rowIndex);
+            int index = rowIndex - page.firstRow;
+            return page.isLoaded(index) ? page.rows.keyAt(index) : loadingItem.name;
+        }
+        return itemAt(rowIndex).name;
+    }
+
+    /**
+     * The back and more links, which stay where they are however the table is sorted.
+     */
+    public boolean isPinnedRow(int rowIndex) {
+        return showingObjects && (rowIndex == 0 || rowIndex > objectCount);
+    }
+
+    /**
+     * Rows of pages that are being listed again have nothing to compare yet.
+     */
+    public boolean isComparableRow(int rowIndex) {
+        if (!showingObjects) {
+            return true;
+        }
+        if (isPinnedRow(rowIndex)) {
+            return false;
+        }
+        Page page = pages.get(pageIndexAt(rowIndex));
+        return page.isLoaded(rowIndex - page.firstRow);
+    }
+
+    /**
+     * Compares two comparable rows without formatting or boxing their values.
+     */
+    public int compareRows(int columnIndex, int rowA, int rowB) {
+        Column column = column(columnIndex);
+        if (!showingObjects) {
+            return (column == Column.FILE_NAME)
+                    ? bucketItems.get(rowA).name.compareToIgnoreCase(bucketItems.get(rowB).name) : 0;
+        }
+        Page pageA = pages.get(pageIndexAt(rowA));
+        Page pageB = pages.get(pageIndexAt(rowB));
+        return column.compare(pageA.rows, rowA - pageA.firstRow, pageB.rows, rowB - pageB.firstRow);
+    }
+
+    /**
+     * Sorting needs every page, so none are forgotten while the view is sorted and any
+     * that were already forgotten are listed again.
+     */
+    public void setKeepAllPages(boolean keepAllPages) {
+        this.keepAllPages = keepAllPages;
+        if (keepAllPages) {
+            for (Page page : pages) {
+                if (page.rows == null) {
+                    reload(page);
+                }
+            }
+        } else {
+            evictPages();
+        }
     }
 
     public void updatedBuckets(List<S3Bucket> buckets) {
-        items.clear();
+        List<DropBoxTableItem> items = new ArrayList<>();
         for (S3Bucket bucket : buckets) {
             DropBoxTableItem item = new DropBoxTableItem();
             item.name = bucket.getName();
             item.icon = bucketIcon;
             items.add(item);
         }
-        updateView();
+        worker.executeOnEventLoop(() -> {
+            generation++;
+            showingObjects = false;
+            bucketItems.clear();
+            bucketItems.addAll(items);
+            clearPages();
+            fireTableDataChanged();
+        });
+    }
+
+    /**
+     * Shows the listing as the first page of objects, or appends it when it is not the first page.
+     * Later pages of a bucket that is no longer being shown are left out.
+     */
+    public void updatedObjects(String bucketName, S3ObjectList list, String marker) {
+        ObjectRows rows = objectRows(list);
+        worker.executeOnEventLoop(() -> {
+            if (list.isFirstPage() || !showingObjects) {
+                generation++;
+                showingObjects = true;
+                objectsBucketName = bucketName;
+                clearPages();
+                addPage(marker, list.getNextMarker(), rows);
+                fireTableDataChanged();
+            } else if (isShowingObjectsOf(bucketName)) {
+                int oldCount = getRowCount();
+                addPage(marker, list.getNextMarker(), rows);
+                fireAppended(oldCount, getRowCount());
+            }
+            evictPages();
+        });
+    }
+
+    private void addPage(String marker, String nextMarker, ObjectRows rows) {
+        pages.add(new Page(marker, nextMarker, 1 + objectCount, rows));
+        objectCount += rows.size();
+        loadedPages++;
+        truncated = !nextMarker.isEmpty();
+        loadingNextPage = false;
+    }
+
+    /**
+     * Puts new objects into their pages, or updates their rows when they are already there.
+     * Objects that belong after the pages listed so far turn up with the next page, and those
+     * of a bucket that is no longer being shown are left out.
+     */
+    public void objectsCreated(String bucketName, Collection<S3Object> objects) {
+        worker.executeOnEventLoop(() -> {
+            if (!isShowingObjectsOf(bucketName)) {
+                return;
+            }
+            for (S3Object object : objects) {
+                objectCreated(object);
+            }
+        });
+    }
+
+    private void objectCreated(S3Object object) {
+        int pageIndex = pageIndexFor(object.getKey());
+        if (pageIndex < 0) {
+            return;
+        }
+        Page page = pages.get(pageIndex);
+        if (page.rows == null) {
+            // exactly where does not matter until the page is listed again
+            resizePage(pageIndex, page.size + 1);
+            fireTableRowsInserted(page.firstRow + page.size - 1, page.firstRow + page.size - 1);
+            return;
+        }
+        int index = page.rows.indexOf(object.getKey());
+        if (index >= 0) {
+            page.rows = page.rows.with(index, object, prefixPool);
+            fireTableRowsUpdated(page.firstRow + index, page.firstRow + index);
+        } else {
+            index = -index - 1;
+            page.rows = page.rows.with(index, object, prefixPool);
+            resizePage(pageIndex, page.size + 1);
+            fireTableRowsInserted(page.firstRow + index, page.firstRow + index);
+        }
     }
 
-    public void updatedObjects(S3ObjectList list) {
-        if (list.isFirstPage()) {
-            items.clear();
-            DropBoxTableItem backLink = new DropBoxTableItem();
-            backLink.name = Constants.BACK_LINK;
-            backLink.icon = bucketIcon;
-            items.add(backLink);
+    public void objectsDeleted(String bucketName, Collection<String> keys) {
+        worker.executeOnEventLoop(() -> {
+            if (!isShowingObjectsOf(bucketName)) {
+                return;
+            }
+            for (String key : keys) {
+                objectDeleted(key);
+            }
+        });
+    }
+
+    private void objectDeleted(String key) {
+        int pageIndex = pageIndexFor(key);
+        if (pageIndex < 0) {
+            return;
+        }
+        Page page = pages.get(pageIndex);
+        int index;
+        if (page.rows == null) {
+            if (page.size == 0) {
+                return;
+            }
+            index = page.size - 1;
         } else {
-            // remove the more link so we can append more objects
-            items.remove(items.size() - 1);
+            index = page.rows.indexOf(key);
+            if (index < 0) {
+                return;
+            }
+            page.rows = page.rows.without(index);
         }
-        for (S3Object object : list.getObjects()) {
-            DropBoxTableItem item = new DropBoxTableItem();
-            item.lastModified = object.getLastModified();
-            item.size = object.getSize();
-            item.name = object.getKey();
-            item.icon = objectIcon;
-            items.add(item);
+        resizePage(pageIndex, page.size - 1);
+        fireTableRowsDeleted(page.firstRow + index, page.firstRow + index);
+    }
+
+    /**
+     * @return index of the page that the key would be listed in, or -1 when that page is yet to be listed
+     */
+    private int pageIndexFor(String key) {
+        if (!showingObjects) {
+            return -1;
+        }
+        int low = 0;
+        int high = pages.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Page page = pages.get(mid);
+            if (!page.marker.isEmpty() && key.compareTo(page.marker) <= 0) {
+                high = mid - 1;
+            } else if (!page.nextMarker.isEmpty() && key.compareTo(page.nextMarker) > 0) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void resizePage(int pageIndex, int size) {
+        Page page = pages.get(pageIndex);
+        int change = size - page.size;
+        page.size = size;
+        for (int i = pageIndex + 1; i < pages.size(); i++) {
+            pages.get(i).firstRow += change;
+        }
+        objectCount += change;
+    }
+
+    private void fireAppended(int oldCount, int newCount) {
+        // the old more link row now holds the first new object, or is gone
+        int moreRow = oldCount - 1;
+        if (newCount > moreRow) {
+            fireTableRowsUpdated(moreRow, moreRow);
         }
-        if (list.isTruncated()) {
-            DropBoxTableItem moreLink = new DropBoxTableItem();
-            moreLink.name = Constants.MORE_LINK;
-            moreLink.icon = bucketIcon;
-            items.add(moreLink);
+        if (newCount > oldCount) {
+            fireTableRowsInserted(oldCount, newCount - 1);
+        } else if (newCount < oldCount) {
+            fireTableRowsDeleted(newCount, oldCount - 1);
         }
-        updateView();
     }
 
-    private void updateView() {
-        worker.executeOnEventLoop(this::fireTableDataChanged);
+    private boolean isShowingObjectsOf(String bucketName) {
+        return showingObjects && bucketName.equals(objectsBucketName);
+    }
+
+    private boolean isObjectRow(int rowIndex) {
+        return showingObjects && rowIndex > 0 && rowIndex <= objectCount;
+    }
+
+    private DropBoxTableItem itemAt(int rowIndex) {
+        if (!showingObjects) {
+            return bucketItems.get(rowIndex);
+        }
+        if (rowIndex == 0) {
+            return backLink;
+        }
+        if (!loadingNextPage) {
+            loadingNextPage = true;
+            loader.loadNextPage(() -> worker.executeOnEventLoop(() -> loadingNextPage = false));
+        }
+        return moreLink;
+    }
+
+    private Page pageAt(int rowIndex) {
+        int pageIndex = pageIndexAt(rowIndex);
+        Page page = pages.get(pageIndex);
+        lastUsedPage = pageIndex;
+        if (page.rows == null) {
+            reload(page);
+        }
+        return page;
+    }
+
+    private int pageIndexAt(int rowIndex) {
+        int low = 0;
+        int high = pages.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pages.get(mid).firstRow <= rowIndex) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void reload(Page page) {
+        if (page.loading) {
+            return;
+        }
+        page.loading = true;
+        loader.loadPage(page.marker, new PageFiller(page, generation));
+    }
+
+    private void reloaded(int expected, Page page, ObjectRows rows) {
+        page.loading = false;
+        if (expected != generation) {
+            return; // listing has been replaced since
+        }
+        int pageIndex = pages.indexOf(page);
+        int oldSize = page.size;
+        page.rows = rows;
+        resizePage(pageIndex, rows.size());
+        loadedPages++;
+        lastUsedPage = pageIndex;
+        // objects may have been added or removed by someone else in the meantime
+        int common = Math.min(oldSize, page.size);
+        if (common > 0) {
+            fireTableRowsUpdated(page.firstRow, page.firstRow + common - 1);
+        }
+        if (page.size > oldSize) {
+            fireTableRowsInserted(page.firstRow + oldSize, page.firstRow + page.size - 1);
+        } else if (page.size < oldSize) {
+            fireTableRowsDeleted(page.firstRow + page.size, page.firstRow + oldSize - 1);
+        }
+        evictPages();
+    }
+
+    private void evictPages() {
+        while (!keepAllPages && loadedPages > maxLoadedPages) {
+            Page furthest = null;
+            int distance = -1;
+            for (int i = 0; i < pages.size(); i++) {
+                Page page = pages.get(i);
+                if (page.rows != null && Math.abs(i - lastUsedPage) > distance) {
+                    distance = Math.abs(i - lastUsedPage);
+                    furthest = page;
+                }
+            }
+            furthest.rows = null;
+            loadedPages--;
+        }
+    }
+
+    private void clearPages() {
+        pages.clear();
+        objectCount = 0;
+        loadedPages = 0;
+        lastUsedPage = 0;
+        truncated = false;
+        loadingNextPage = false;
+        prefixPool.clear();
+    }
+
+    private ObjectRows objectRows(S3ObjectList list) {
+        return new ObjectRows(list.getObjects(), prefixPool);
+    }
+
+    private DropBoxTableItem linkItem(String name) {
+        DropBoxTableItem item = new DropBoxTableItem();
+        item.name = name;
+        item.icon = bucketIcon;
+        return item;
+    }
+
+    /**
+     * Lists the page again from its marker, carrying on past the end of each listing until
+     * it gets to the next page's marker.
+     */
+    private class PageFiller implements PageLoader.PageCallback {
+
+        private final List<S3Object> objects = new ArrayList<>();
+        private final Page page;
+        private final int expected;
+
+        PageFiller(Page page, int expected) {
+            this.page = page;
+            this.expected = expected;
+        }
+
+        public void pageLoaded(S3ObjectList list) {
+            String end = page.nextMarker;
+            for (S3Object object : list.getObjects()) {
+                if (!end.isEmpty() && object.getKey().compareTo(end) > 0) {
+                    break;
+                }
+                objects.add(object);
+            }
+            String next = list.getNextMarker();
+            if (list.isTruncated() && (end.isEmpty() || next.compareTo(end) < 0)) {
+                loader.loadPage(next, this);
+            } else {
+                ObjectRows rows = new ObjectRows(objects, prefixPool);
+                worker.executeOnEventLoop(() -> reloaded(expected, page, rows));
+            }
+        }
+
+        public void pageFailed() {
+            worker.executeOnEventLoop(() -> page.loading = false);
+        }
+    }
+
+    private static class Page {
+
+        final String marker;
+        final String nextMarker;
+
+        int firstRow;
+        int size;
+        ObjectRows rows;
+        boolean loading;
+
+        Page(String marker, String nextMarker, int firstRow, ObjectRows rows) {
+            this.marker = marker;
+            this.nextMarker = nextMarker;
+            this.firstRow = firstRow;
+            this.size = rows.size();
+            this.rows = rows;
+        }
+
+        boolean isLoaded(int index) {
+            return rows != null && index < rows.size();
+        }
     }
 
     enum Column {
 
-        ICON(""), FILE_NAME("File Name"), SIZE("Size"), LAST_MODIFIED("Last Modified");
+        ICON("", Icon.class), FILE_NAME("File Name", String.class),
+        SIZE("Size", Long.class), LAST_MODIFIED("Last Modified", Long.class);
 
         final String title;
+        final Class<?> type;
 
-        Column(String title) {
+        Column(String title, Class<?> type) {
             this.title = title;
+            this.type = type;
         }
 
         public Object valueAt(DropBoxTableItem item) {
@@ -162,10 +609,34 @@ class DropBoxTableModel extends AbstractTableModel {
                     return item.icon;
                 case FILE_NAME:
                     return item.name;
+                default:
+                    return null;
+            }
+        }
+
+        public Object valueAt(ObjectRows rows, int index, Icon icon) {
+            switch (this) {
+                case ICON:
+                    return icon;
+                case FILE_NAME:
+                    return rows.keyAt(index);
+                case SIZE:
+                    return rows.sizeAt(index);
+                default:
+                    return rows.lastModifiedAt(index);
+            }
+        }
+
+        public int compare(ObjectRows rowsA, int indexA, ObjectRows rowsB, int indexB) {
+            switch (this) {
+                case ICON:
+                    return 0;
+                case FILE_NAME:
+                    return ObjectRows.compareKeys(rowsA, indexA, rowsB, indexB);
                 case SIZE:
-                    return item.size;
+                    return Long.compare(rowsA.sizeAt(indexA), rowsB.sizeAt(indexB));
                 default:
-                    return item.lastModified;
+                    return Long.compare(rowsA.lastModifiedAt(indexA), rowsB.lastModifiedAt(indexB));
             }
         }
     }
@@ -27,15 +27,153 @@
  */
 package com.tomczarniecki.s3.gui;
 
+import com.tomczarniecki.s3.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.swing.SwingUtilities;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs background work on a bounded pool of named daemon threads, so that rapid clicking
+ * queues up work rather than starting a new thread for every action. Once the queue is
+ * full, work runs on the thread that asked for it, unless that is the event loop, which
+ * must never wait on S3. Work from the event loop is turned away instead and the user is
+ * told that it has been. Can also run each
+ * command on its own virtual thread, where the JDK has them, since nearly all of the
+ * background work is spent waiting on S3.
+ */
 class DropBoxWorker implements Worker {
 
+    private static final Logger logger = LoggerFactory.getLogger(DropBoxWorker.class);
+
+    private static final int DEFAULT_THREADS = 16;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final ExecutorService executor;
+
+    private volatile Runnable busyListener = () -> {
+    };
+
+    public DropBoxWorker() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+    }
+
+    public DropBoxWorker(int threads, int queueSize) {
+        this(boundedPool(threads, queueSize));
+    }
+
+    DropBoxWorker(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Falls back to the bounded pool when virtual threads are asked for but not available.
+     */
+    public static DropBoxWorker create(boolean virtualThreads) {
+        if (virtualThreads) {
+            ExecutorService executor = VirtualThreads.newExecutor("s3dropbox-virtual-");
+            if (executor != null) {
+                return new DropBoxWorker(executor);
+            }
+            logger.warn("Virtual threads need JDK 21 or later, using platform threads");
+        }
+        return new DropBoxWorker();
+    }
+
+    /**
+     * Called on the event loop whenever work from it is turned away.
+     */
+    public void setBusyListener(Runnable busyListener) {
+        this.busyListener = busyListener;
+    }
+
     public void executeInBackground(Runnable command) {
-        new Thread(command).start();
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> run(command));
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                queued.decrementAndGet();
+                logger.warn("Dropped background task, worker has been shut down", e);
+                return;
+            }
+            if (SwingUtilities.isEventDispatchThread()) {
+                queued.decrementAndGet();
+                logger.error("Turned away background task, " + getQueueDepth() + " tasks already waiting", e);
+                busyListener.run();
+                return;
+            }
+            // too much waiting already, so slow the caller down rather than lose the work
+            logger.warn("Running background task on " + Thread.currentThread().getName()
+                    + ", " + getQueueDepth() + " tasks already waiting");
+            run(command);
+            return;
+        }
+        int depth = getQueueDepth();
+        if (depth > 0) {
+            logger.debug("Background tasks waiting: {}, running: {}", depth, getActiveCount());
+        }
     }
 
     public void executeOnEventLoop(Runnable command) {
         SwingUtilities.invokeLater(command);
     }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedTaskCount() {
+        return completed.get();
+    }
+
+    /**
+     * Stops taking new work and gives running tasks a few seconds to finish before interrupting them.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                logger.info("Interrupting " + getActiveCount() + " background tasks");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Background worker stopped after " + getCompletedTaskCount() + " tasks");
+    }
+
+    private void run(Runnable command) {
+        queued.decrementAndGet();
+        active.incrementAndGet();
+        try {
+            command.run();
+        } finally {
+            active.decrementAndGet();
+            completed.incrementAndGet();
+        }
+    }
+
+    private static ExecutorService boundedPool(int threads, int queueSize) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize), new NamedThreadFactory("s3dropbox-worker-"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
 }
@@ -29,10 +29,13 @@ package com.tomczarniecki.s3.gui;
 
 import com.tomczarniecki.s3.ProgressListener;
 import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3DeleteResult;
 import org.joda.time.DateTime;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DualController implements Controller {
@@ -136,6 +139,11 @@ public class DualController implements Controller {
         return active.get().objectExists(bucketName, objectKey);
     }
 
+    @Override
+    public Set<String> listObjectKeys(String bucketName, String prefix) {
+        return active.get().listObjectKeys(bucketName, prefix);
+    }
+
     @Override
     public void createObject(String bucketName, String objectKey, File sourceFile, ProgressListener listener) {
         active.get().createObject(bucketName, objectKey, sourceFile, listener);
@@ -152,7 +160,17 @@ public class DualController implements Controller {
     }
 
     @Override
-    public void deleteCurrentObject() {
-        active.get().deleteCurrentObject();
+    public List<String> getSelectedObjectKeys() {
+        return active.get().getSelectedObjectKeys();
+    }
+
+    @Override
+    public Map<String, String> deleteObjects(String bucketName, List<String> objectKeys) {
+        return active.get().deleteObjects(bucketName, objectKeys);
+    }
+
+    @Override
+    public S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener) {
+        return active.get().deleteObjectsUnder(bucketName, prefix, listener);
     }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.tomczarniecki.s3.Pair.pair;
+
+/**
+ * Walks dropped files and folders on its own thread and hands over each file, with the
+ * key that it will be uploaded to, as soon as it is found. Uploads can then start while
+ * a large tree is still being scanned. The queue in between is bounded, so the scan never
+ * gets more than a few thousand files ahead of the uploads.
+ */
+class FileScanner implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileScanner.class);
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final Pair<String, File> END = pair("", null);
+
+    private final AtomicLong filesFound = new AtomicLong();
+    private final AtomicLong bytesFound = new AtomicLong();
+    private final BlockingQueue<Pair<String, File>> queue;
+    private final File[] files;
+    private final String prefix;
+    private final Thread thread;
+
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private boolean finished;
+
+    public FileScanner(File[] files, String prefix) {
+        this(files, prefix, DEFAULT_QUEUE_SIZE);
+    }
+
+    public FileScanner(File[] files, String prefix, int queueSize) {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.files = files;
+        this.prefix = prefix;
+        this.thread = new Thread(this::scan, "s3dropbox-scanner");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Waits for the next file to be found.
+     *
+     * @return key and file, or null once everything has been scanned
+     * @throws IOException when the scan could not carry on
+     * @throws RuntimeException when the scan failed in any other way
+     */
+    public Pair<String, File> next() throws IOException, InterruptedException {
+        if (finished) {
+            return null;
+        }
+        Pair<String, File> entry = queue.take();
+        if (entry == END) {
+            finished = true;
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    public long getFilesFound() {
+        return filesFound.get();
+    }
+
+    public long getBytesFound() {
+        return bytesFound.get();
+    }
+
+    /**
+     * Stops the scan if it is still going.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void scan() {
+        try {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    scanFolder(file.toPath(), prefix + file.getName() + "/");
+                } else if (file.isFile()) {
+                    found(prefix + file.getName(), file);
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (Throwable e) {
+            // anything, so that next() never waits for an END that is not coming
+            failure = e;
+        } finally {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (closed) {
+            return; // nobody is waiting
+        }
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            // closed, nobody is waiting
+        }
+    }
+
+    private void scanFolder(Path folder, String folderPrefix) throws IOException, InterruptedException {
+        // links are followed, as File.isDirectory and File.listFiles used to
+        Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    if (!found(folderPrefix + relativeKey(folder, path), path.toFile(), attrs.size())) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                logger.warn("Cannot scan " + path, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (closed) {
+            throw new InterruptedException();
+        }
+    }
+
+    private void found(String key, File file) throws InterruptedException {
+        if (!found(key, file, file.length())) {
+            throw new InterruptedException();
+        }
+    }
+
+    private boolean found(String key, File file, long length) {
+        filesFound.incrementAndGet();
+        bytesFound.addAndGet(length);
+        try {
+            queue.put(pair(key, file));
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static String relativeKey(Path folder, Path path) {
+        StringBuilder key = new StringBuilder();
+        for (Path name : folder.relativize(path)) {
+            if (key.length() > 0) {
+                key.append('/');
+            }
+            key.append(name);
+        }
+        return key.toString();
+    }
+}
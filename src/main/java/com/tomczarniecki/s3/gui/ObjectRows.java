@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.S3Object;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store for a page of listed objects. Keys are split after their last slash so
+ * that objects in the same folder share one prefix string, and sizes and timestamps are
+ * kept as primitives until a cell needs to be painted.
+ */
+class ObjectRows {
+
+    private final String[] prefixes;
+    private final String[] names;
+    private final long[] sizes;
+    private final long[] lastModified;
+
+    public ObjectRows(List<S3Object> objects, Map<String, String> prefixPool) {
+        this(objects.size());
+        for (int i = 0; i < objects.size(); i++) {
+            set(i, objects.get(i), prefixPool);
+        }
+    }
+
+    private ObjectRows(int count) {
+        prefixes = new String[count];
+        names = new String[count];
+        sizes = new long[count];
+        lastModified = new long[count];
+    }
+
+    private void set(int index, S3Object object, Map<String, String> prefixPool) {
+        String key = object.getKey();
+        int split = key.lastIndexOf('/') + 1;
+        if (split > 0) {
+            prefixes[index] = pooled(prefixPool, key.substring(0, split));
+            names[index] = key.substring(split);
+        } else {
+            prefixes[index] = "";
+            names[index] = key;
+        }
+        sizes[index] = object.getSize();
+        lastModified[index] = object.getLastModified();
+    }
+
+    /**
+     * Copy with the object put in at the index, or in place of the one there when it has the same key.
+     */
+    public ObjectRows with(int index, S3Object object, Map<String, String> prefixPool) {
+        boolean replacing = index < size() && keyAt(index).equals(object.getKey());
+        ObjectRows copy = new ObjectRows(replacing ? size() : size() + 1);
+        copyTo(copy, 0, 0, index);
+        copyTo(copy, replacing ? index + 1 : index, index + 1, size() - (replacing ? index + 1 : index));
+        copy.set(index, object, prefixPool);
+        return copy;
+    }
+
+    /**
+     * Copy without the object at the index.
+     */
+    public ObjectRows without(int index) {
+        ObjectRows copy = new ObjectRows(size() - 1);
+        copyTo(copy, 0, 0, index);
+        copyTo(copy, index + 1, index, size() - index - 1);
+        return copy;
+    }
+
+    private void copyTo(ObjectRows target, int from, int to, int count) {
+        System.arraycopy(prefixes, from, target.prefixes, to, count);
+        System.arraycopy(names, from, target.names, to, count);
+        System.arraycopy(sizes, from, target.sizes, to, count);
+        System.arraycopy(lastModified, from, target.lastModified, to, count);
+    }
+
+    /**
+     * Binary search for the key, as the rows are in the order that S3 listed them.
+     *
+     * @return index of the key, or (-(insertion point) - 1) when it is not there
+     */
+    public int indexOf(String key) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keyAt(mid).compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static String pooled(Map<String, String> pool, String prefix) {
+        String existing = pool.putIfAbsent(prefix, prefix);
+        return (existing != null) ? existing : prefix;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String keyAt(int index) {
+        String prefix = prefixes[index];
+        return prefix.isEmpty() ? names[index] : prefix.concat(names[index]);
+    }
+
+    public long sizeAt(int index) {
+        return sizes[index];
+    }
+
+    public long lastModifiedAt(int index) {
+        return lastModified[index];
+    }
+
+    /**
+     * Compares two keys ignoring case, as {@link String#compareToIgnoreCase} would,
+     * without putting their prefixes and names back together first.
+     */
+    public static int compareKeys(ObjectRows rowsA, int indexA, ObjectRows rowsB, int indexB) {
+        String prefixA = rowsA.prefixes[indexA];
+        String nameA = rowsA.names[indexA];
+        String prefixB = rowsB.prefixes[indexB];
+        String nameB = rowsB.names[indexB];
+        int lengthA = prefixA.length() + nameA.length();
+        int lengthB = prefixB.length() + nameB.length();
+        int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            char a = charAt(prefixA, nameA, i);
+            char b = charAt(prefixB, nameB, i);
+            if (a != b) {
+                a = Character.toLowerCase(Character.toUpperCase(a));
+                b = Character.toLowerCase(Character.toUpperCase(b));
+                if (a != b) {
+                    return a - b;
+                }
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    private static char charAt(String prefix, String name, int index) {
+        int prefixLength = prefix.length();
+        return (index < prefixLength) ? prefix.charAt(index) : name.charAt(index - prefixLength);
+    }
+}
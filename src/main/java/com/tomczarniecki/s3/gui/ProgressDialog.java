@@ -36,16 +36,23 @@ import com.tomczarniecki.s3.ProgressListener;
 import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 class ProgressDialog extends JDialog implements ProgressListener {
 
+    private static final int PROGRESS_MAX = 1000;
+
+    private final Map<String, Integer> transfers = new LinkedHashMap<>();
     private final JTextArea display;
+    private final JLabel status;
     private final JProgressBar progress;
     private final JButton closeButton;
     private final SwingWorker worker;
@@ -58,15 +65,17 @@ class ProgressDialog extends JDialog implements ProgressListener {
         this.display.setEditable(false);
         this.display.setLineWrap(true);
 
+        status = new JLabel(" ");
         progress = new JProgressBar();
         closeButton = new JButton("Close");
         closeButton.addActionListener(new CloseButtonClick());
 
         JPanel panel = FormBuilder.create()
-                .layout(new FormLayout("225dlu,5dlu,70dlu", "100dlu,5dlu,pref"))
+                .layout(new FormLayout("225dlu,5dlu,70dlu", "100dlu,5dlu,pref,5dlu,pref"))
                 .add(new JScrollPane(this.display)).xyw(1, 1, 3, "fill,fill")
-                .add(progress).xy(1, 3, "fill,fill")
-                .add(closeButton).xy(3, 3, "fill,fill")
+                .add(status).xyw(1, 3, 3, "fill,fill")
+                .add(progress).xy(1, 5, "fill,fill")
+                .add(closeButton).xy(3, 5, "fill,fill")
                 .padding(Paddings.DIALOG)
                 .build();
 
@@ -82,6 +91,8 @@ class ProgressDialog extends JDialog implements ProgressListener {
             setLocationRelativeTo(getOwner());
             closeButton.setEnabled(false);
             display.setText("");
+            transfers.clear();
+            status.setText(" ");
             setVisible(true);
         });
         next();
@@ -102,9 +113,11 @@ class ProgressDialog extends JDialog implements ProgressListener {
     public void finish() {
         worker.executeOnEventLoop(() -> {
             closeButton.setEnabled(true);
+            transfers.clear();
+            status.setText(" ");
             if (progress.isIndeterminate()) {
                 progress.setMinimum(0);
-                progress.setMaximum(100);
+                progress.setMaximum(PROGRESS_MAX);
                 progress.setStringPainted(true);
                 progress.setIndeterminate(false);
             }
@@ -124,14 +137,55 @@ class ProgressDialog extends JDialog implements ProgressListener {
         worker.executeOnEventLoop(() -> {
             if (progress.isIndeterminate()) {
                 progress.setMinimum(0);
-                progress.setMaximum((int) length);
+                progress.setMaximum(PROGRESS_MAX);
                 progress.setStringPainted(true);
                 progress.setIndeterminate(false);
             }
-            progress.setValue((int) count);
+            progress.setValue(scaled(count, length));
+        });
+    }
+
+    public void status(final String text, final Object... args) {
+        worker.executeOnEventLoop(() -> status.setText(String.format(text, args)));
+    }
+
+    /**
+     * Per-file progress for transfers that run alongside each other. The main progress
+     * bar is left for the aggregate of the whole batch, see {@link #processed(long, long)}.
+     */
+    public void fileProcessed(final String name, final long count, final long length) {
+        worker.executeOnEventLoop(() -> {
+            transfers.put(name, scaled(count, length) / (PROGRESS_MAX / 100));
+            updateStatus();
+        });
+    }
+
+    public void fileFinished(final String name) {
+        worker.executeOnEventLoop(() -> {
+            transfers.remove(name);
+            updateStatus();
         });
     }
 
+    private void updateStatus() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : transfers.entrySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(entry.getKey()).append(' ').append(entry.getValue()).append('%');
+        }
+        status.setText(text.length() > 0 ? text.toString() : " ");
+    }
+
+    private static int scaled(long count, long length) {
+        // long totals can overflow the progress bar's int range
+        if (length <= 0) {
+            return PROGRESS_MAX;
+        }
+        return (int) Math.min(PROGRESS_MAX, (count * PROGRESS_MAX) / length);
+    }
+
     private class CloseButtonClick implements ActionListener {
         public void actionPerformed(ActionEvent e) {
             setVisible(false);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.S3DeleteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PurgeWorker {
+
+    private static final int MAX_FAILURES_SHOWN = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ProgressDialog dialog;
+    private final Controller controller;
+    private final Worker worker;
+
+    public PurgeWorker(Controller controller, Display display, Worker worker) {
+        this.dialog = display.createProgressDialog("Delete Progress", worker);
+        this.controller = controller;
+        this.worker = worker;
+    }
+
+    public void deleteObjectsUnder(final String bucketName, final String prefix) {
+        worker.executeInBackground(() -> {
+            dialog.begin();
+            try {
+                dialog.append("Deleting everything in %s/%s\n", bucketName, prefix);
+
+                AtomicLong processed = new AtomicLong();
+                S3DeleteResult result = controller.deleteObjectsUnder(bucketName, prefix, (count, length) -> {
+                    processed.set(count);
+                    dialog.processed(count, length);
+                    dialog.status("Deleted %,d of %,d files listed so far", count, length);
+                });
+
+                Map<String, String> failures = result.getFailures();
+                dialog.append("\nDeleted %,d files", processed.get() - failures.size());
+                appendFailures(failures);
+                if (result.isStoppedEarly()) {
+                    dialog.append("\n\nSTOPPED - S3 refused a whole batch of files, so the rest were not tried");
+                } else {
+                    dialog.append("\n\nDone");
+                }
+
+            } catch (Exception e) {
+                logger.info("Delete failed for " + bucketName + "/" + prefix, e);
+                dialog.append("\n\nERROR - %s", e.toString());
+
+            } finally {
+                dialog.finish();
+            }
+        });
+    }
+
+    private void appendFailures(Map<String, String> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+        dialog.append("\n\nCannot delete %,d files:", failures.size());
+        int shown = 0;
+        for (Map.Entry<String, String> entry : failures.entrySet()) {
+            if (shown++ == MAX_FAILURES_SHOWN) {
+                dialog.append("\n... and %,d more", failures.size() - MAX_FAILURES_SHOWN);
+                break;
+            }
+            dialog.append("\n%s (%s)", entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses refreshes of the same thing that are asked for in quick succession into one.
+ * A refresh runs once nobody has asked for it for a little while, so a batch of uploads
+ * gets one refresh at the end rather than one per file. A refresh that keeps being asked
+ * for still runs every so often, so a long batch shows how it is getting on.
+ */
+class RefreshCoalescer {
+
+    public static final long DEFAULT_QUIET_MILLIS = 250;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 2000;
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshCoalescer.class);
+
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final long quietMillis;
+    private final long maxDelayMillis;
+
+    public RefreshCoalescer() {
+        this(DEFAULT_QUIET_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * No quiet period means that every refresh runs straight away on the calling thread.
+     */
+    public RefreshCoalescer(long quietMillis, long maxDelayMillis) {
+        this.quietMillis = quietMillis;
+        this.maxDelayMillis = Math.max(quietMillis, maxDelayMillis);
+        this.scheduler = (quietMillis > 0)
+                ? Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("s3dropbox-refresh-"))
+                : null;
+    }
+
+    /**
+     * Runs the refresh once the key has been quiet for a while. Refreshes asked for in the
+     * meantime with the same key replace this one, only the last of them runs.
+     */
+    public void refresh(String key, Runnable refresh) {
+        if (scheduler == null) {
+            refresh.run();
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            Pending waiting = pending.get(key);
+            if (waiting == null) {
+                waiting = new Pending(now);
+                pending.put(key, waiting);
+            } else {
+                waiting.future.cancel(false);
+            }
+            long waited = TimeUnit.NANOSECONDS.toMillis(now - waiting.firstAsked);
+            long delay = Math.max(0, Math.min(quietMillis, maxDelayMillis - waited));
+            Pending scheduled = waiting;
+            waiting.refresh = refresh;
+            waiting.future = scheduler.schedule(() -> run(key, scheduled), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void run(String key, Pending scheduled) {
+        Runnable refresh;
+        synchronized (this) {
+            if (pending.get(key) != scheduled) {
+                return; // already run by an earlier timer that could not be cancelled in time
+            }
+            pending.remove(key);
+            refresh = scheduled.refresh;
+        }
+        try {
+            refresh.run();
+        } catch (Exception e) {
+            logger.warn("Refresh failed for " + key, e);
+        }
+    }
+
+    private static class Pending {
+
+        final long firstAsked;
+
+        Runnable refresh;
+        ScheduledFuture<?> future;
+
+        Pending(long firstAsked) {
+            this.firstAsked = firstAsked;
+        }
+    }
+}
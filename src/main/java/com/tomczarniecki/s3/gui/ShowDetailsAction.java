@@ -60,7 +60,9 @@ public class ShowDetailsAction extends AbstractAction implements Controller.Call
         worker.executeOnEventLoop(() -> {
             String msg = String.format(
                     "Key: %s\nSize: %s\nLast Modified: %s",
-                    object.getKey(), object.getSize(), object.getLastModified()
+                    object.getKey(),
+                    CellFormat.size(object.getSize()),
+                    CellFormat.lastModified(object.getLastModified())
             );
             display.showMessage("Details", msg);
         });
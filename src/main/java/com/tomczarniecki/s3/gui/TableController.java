@@ -29,29 +29,53 @@ package com.tomczarniecki.s3.gui;
 
 import com.tomczarniecki.s3.ProgressListener;
 import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3DeleteResult;
 import com.tomczarniecki.s3.S3Object;
 import com.tomczarniecki.s3.S3ObjectList;
 import com.tomczarniecki.s3.Service;
 import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
-class TableController implements Controller {
+class TableController implements Controller, DropBoxTableModel.PageLoader {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final Service service;
+    private final Worker worker;
     private final DropBoxTableModel model;
     private final Announcer<ControllerListener> announcer;
+    private final RefreshCoalescer refresher;
+    private final Map<String, List<S3Object>> createdObjects = new HashMap<>();
 
     private boolean showingObjects;
     private String selectedBucketName;
     private String selectedObjectKey;
+    private List<String> selectedObjectKeys = Collections.emptyList();
     private String nextMarker = "";
+    private NextPage nextPage;
+
+    public TableController(Service service, Worker worker) {
+        this(service, worker, new RefreshCoalescer());
+    }
 
-    public TableController(Service service, SwingWorker worker) {
+    public TableController(Service service, Worker worker, RefreshCoalescer refresher) {
         this.announcer = Announcer.createFor(ControllerListener.class);
-        this.model = new DropBoxTableModel(worker);
+        this.refresher = refresher;
+        this.model = new DropBoxTableModel(worker, this);
         this.service = service;
+        this.worker = worker;
     }
 
     public DropBoxTableModel getModel() {
@@ -63,10 +87,11 @@ class TableController implements Controller {
     }
 
     public void refreshBuckets() {
+        cancelNextPage();
         List<S3Bucket> buckets = service.listAllMyBuckets();
         model.updatedBuckets(buckets);
         selectedBucketName = null;
-        selectedObjectKey = null;
+        clearSelectedObjects();
         showingObjects = false;
         announcer.announce().showingBuckets();
     }
@@ -75,27 +100,85 @@ class TableController implements Controller {
         showObjects(false);
     }
 
-    public void showObjects(boolean useNextMarker) {
+    public synchronized void showObjects(boolean useNextMarker) {
         if (!useNextMarker) {
             nextMarker = "";
         }
-        S3ObjectList objects = service.listObjectsInBucket(selectedBucketName, nextMarker);
-        model.updatedObjects(objects);
-        nextMarker = objects.getNextMarker();
-        selectedObjectKey = null;
+        appendObjects();
+        clearSelectedObjects();
         showingObjects = true;
         announcer.announce().showingObjects(selectedBucketName);
     }
 
+    public void loadNextPage(Runnable failed) {
+        worker.executeInBackground(() -> {
+            try {
+                appendNextPage();
+            } catch (Exception e) {
+                logger.warn("Cannot load next page of " + selectedBucketName, e);
+                failed.run();
+            }
+        });
+    }
+
+    public void loadPage(String marker, PageCallback callback) {
+        String bucketName = selectedBucketName;
+        worker.executeInBackground(() -> {
+            try {
+                callback.pageLoaded(service.listObjectsInBucket(bucketName, marker));
+            } catch (Exception e) {
+                logger.warn("Cannot load page of " + bucketName + " at " + marker, e);
+                callback.pageFailed();
+            }
+        });
+    }
+
+    private synchronized void appendNextPage() {
+        // more link is painted as the user scrolls down to it, leave the selection alone
+        if (showingObjects && !nextMarker.isEmpty()) {
+            appendObjects();
+        }
+    }
+
+    private void appendObjects() {
+        String marker = nextMarker;
+        S3ObjectList objects = listObjects(selectedBucketName, marker);
+        model.updatedObjects(selectedBucketName, objects, marker);
+        nextMarker = objects.getNextMarker();
+        if (objects.isTruncated()) {
+            fetchNextPage(selectedBucketName, nextMarker);
+        }
+    }
+
     public void updateSelectedName(int index) {
-        String name = model.getNameAt(index);
+        updateSelectedNames(new int[]{index});
+    }
+
+    /**
+     * @param indices model rows, the first of which is taken as the selected bucket or object
+     */
+    public void updateSelectedNames(int[] indices) {
+        String name = model.getNameAt(indices[0]);
         if (showingObjects) {
+            List<String> keys = new ArrayList<>(indices.length);
+            for (int index : indices) {
+                String key = model.getNameAt(index);
+                if (isObjectKey(key)) {
+                    keys.add(key);
+                }
+            }
             selectedObjectKey = name;
+            selectedObjectKeys = keys;
         } else {
             selectedBucketName = name;
         }
     }
 
+    private void clearSelectedObjects() {
+        selectedObjectKey = null;
+        selectedObjectKeys = Collections.emptyList();
+    }
+
     public String getSelectedBucketName() {
         return selectedBucketName;
     }
@@ -108,6 +191,10 @@ class TableController implements Controller {
         return selectedObjectKey;
     }
 
+    public List<String> getSelectedObjectKeys() {
+        return selectedObjectKeys;
+    }
+
     public List<String> bucketRegions() {
         return service.bucketRegions();
     }
@@ -130,14 +217,57 @@ class TableController implements Controller {
         return service.objectExists(bucketName, objectKey);
     }
 
+    public Set<String> listObjectKeys(String bucketName, String prefix) {
+        return service.listObjectKeys(bucketName, prefix);
+    }
+
     public void createObject(String bucketName, String objectKey, File source, ProgressListener listener) {
         service.createObject(bucketName, objectKey, source, listener);
-        showObjects(false);
+        if (showingObjects && bucketName.equals(selectedBucketName)) {
+            // close enough to what S3 has until the page is listed again
+            S3Object object = new S3Object(objectKey, source.length(), System.currentTimeMillis());
+            synchronized (createdObjects) {
+                createdObjects.computeIfAbsent(bucketName, key -> new ArrayList<>()).add(object);
+            }
+            refresher.refresh(bucketName, () -> showCreatedObjects(bucketName));
+        }
     }
 
-    public void deleteCurrentObject() {
-        service.deleteObject(selectedBucketName, selectedObjectKey);
-        showObjects(false);
+    /**
+     * Uploads are shown a batch at a time, rather than one trip to the event loop per file.
+     */
+    private void showCreatedObjects(String bucketName) {
+        List<S3Object> objects;
+        synchronized (createdObjects) {
+            objects = createdObjects.remove(bucketName);
+        }
+        if (objects != null) {
+            // the model checks the bucket on the event loop, where it cannot change under us
+            model.objectsCreated(bucketName, objects);
+        }
+    }
+
+    public Map<String, String> deleteObjects(String bucketName, List<String> objectKeys) {
+        Map<String, String> failures = service.deleteObjects(bucketName, objectKeys);
+        List<String> deleted = new ArrayList<>(objectKeys.size());
+        for (String key : objectKeys) {
+            if (!failures.containsKey(key)) {
+                deleted.add(key);
+            }
+        }
+        worker.executeOnEventLoop(() -> {
+            model.objectsDeleted(bucketName, deleted);
+            clearSelectedObjects();
+        });
+        return failures;
+    }
+
+    public S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener) {
+        S3DeleteResult result = service.deleteObjectsUnder(bucketName, prefix, listener);
+        if (showingObjects && bucketName.equals(selectedBucketName)) {
+            showObjects(false);
+        }
+        return result;
     }
 
     public void downloadCurrentObject(File target, ProgressListener listener) {
@@ -153,9 +283,14 @@ class TableController implements Controller {
     }
 
     public boolean isObjectSelected() {
-        return (selectedObjectKey != null)
-                && !Constants.BACK_LINK.equals(selectedObjectKey)
-                && !Constants.MORE_LINK.equals(selectedObjectKey);
+        return isObjectKey(selectedObjectKey);
+    }
+
+    private static boolean isObjectKey(String name) {
+        return (name != null)
+                && !Constants.BACK_LINK.equals(name)
+                && !Constants.MORE_LINK.equals(name)
+                && !Constants.LOADING_LINK.equals(name);
     }
 
     public boolean canShowBuckets() {
@@ -182,4 +317,60 @@ class TableController implements Controller {
         S3Object object = service.getObject(selectedBucketName, selectedObjectKey);
         callback.selectedObject(object);
     }
+
+    /**
+     * Uses the page fetched in the background when it is the one we want, so that
+     * clicking on the more link does not have to wait for S3.
+     */
+    private S3ObjectList listObjects(String bucketName, String marker) {
+        NextPage page = nextPage;
+        nextPage = null;
+        if (page != null && page.isFor(bucketName, marker)) {
+            try {
+                // does nothing when already run or running, otherwise lists here rather than
+                // waiting on a task that may never get a thread while we hold this lock
+                page.objects.run();
+                return page.objects.get();
+
+            } catch (ExecutionException e) {
+                logger.info("Fetching next page in the background failed, trying again", e.getCause());
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        } else if (page != null) {
+            page.objects.cancel(true);
+        }
+        return service.listObjectsInBucket(bucketName, marker);
+    }
+
+    private void fetchNextPage(String bucketName, String marker) {
+        nextPage = new NextPage(bucketName, marker, () -> service.listObjectsInBucket(bucketName, marker));
+        worker.executeInBackground(nextPage.objects);
+    }
+
+    private synchronized void cancelNextPage() {
+        if (nextPage != null) {
+            nextPage.objects.cancel(true);
+            nextPage = null;
+        }
+    }
+
+    private static class NextPage {
+
+        private final String bucketName;
+        private final String marker;
+        private final FutureTask<S3ObjectList> objects;
+
+        public NextPage(String bucketName, String marker, Callable<S3ObjectList> fetch) {
+            this.bucketName = bucketName;
+            this.marker = marker;
+            this.objects = new FutureTask<>(fetch);
+        }
+
+        public boolean isFor(String bucketName, String marker) {
+            return this.bucketName.equals(bucketName) && this.marker.equals(marker);
+        }
+    }
 }
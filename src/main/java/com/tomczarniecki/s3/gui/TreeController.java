@@ -27,15 +27,21 @@
  */
 package com.tomczarniecki.s3.gui;
 
+import com.tomczarniecki.s3.ListingCache;
+import com.tomczarniecki.s3.ListingListener;
 import com.tomczarniecki.s3.Pair;
 import com.tomczarniecki.s3.ProgressListener;
 import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3DeleteResult;
 import com.tomczarniecki.s3.S3List;
 import com.tomczarniecki.s3.S3Object;
 import com.tomczarniecki.s3.Service;
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.swing.JTree;
 import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
@@ -45,25 +51,55 @@ import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 
 public class TreeController implements TreeSelectionListener, TreeWillExpandListener, Controller {
 
     public static final String LOADING = "loading ...";
     public static final String EMPTY = "<empty>";
+    public static final String FAILED = "<failed to load>";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final Announcer<ControllerListener> announcer;
     private final DefaultMutableTreeNode root;
     private final DefaultTreeModel model;
     private final Executor executor;
     private final Service service;
+    private final ListingCache cache;
     private final SwingWorker worker;
+    private final RefreshCoalescer refresher;
+    private final Map<String, List<String>> createdKeys = new HashMap<>();
+    // latest listing of each node, earlier ones that are still going leave it alone
+    private final Map<TreeNode, NodeFiller> fillers = new ConcurrentHashMap<>();
 
     private TreePath selectedPath;
+    private List<TreePath> selectedPaths = Collections.emptyList();
 
     public TreeController(Service service, SwingWorker worker, Executor executor) {
+        this(service, ListingCache.NONE, worker, executor, new RefreshCoalescer());
+    }
+
+    public TreeController(Service service, SwingWorker worker, Executor executor, RefreshCoalescer refresher) {
+        this(service, ListingCache.NONE, worker, executor, refresher);
+    }
+
+    /**
+     * @param cache cleared when the user asks for a bucket to be listed again
+     */
+    public TreeController(Service service, ListingCache cache, SwingWorker worker, Executor executor,
+                          RefreshCoalescer refresher) {
+        this.refresher = refresher;
+        this.cache = cache;
         this.root = loadingNode("root");
         this.model = new DefaultTreeModel(root);
         this.announcer = Announcer.createFor(ControllerListener.class);
@@ -110,9 +146,33 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
         return service.objectExists(bucketName, objectKey);
     }
 
+    public Set<String> listObjectKeys(String bucketName, String prefix) {
+        return service.listObjectKeys(bucketName, prefix);
+    }
+
     public void createObject(String bucketName, String objectKey, File sourceFile, ProgressListener listener) {
         service.createObject(bucketName, objectKey, sourceFile, listener);
-        refreshObjects(bucketName);
+        synchronized (createdKeys) {
+            createdKeys.computeIfAbsent(bucketName, key -> new ArrayList<>()).add(objectKey);
+        }
+        refresher.refresh(bucketName, () -> showCreatedObjects(bucketName));
+    }
+
+    /**
+     * Uploads are put into the tree a batch at a time, rather than one trip to the event loop per file.
+     */
+    private void showCreatedObjects(String bucketName) {
+        List<String> objectKeys;
+        synchronized (createdKeys) {
+            objectKeys = createdKeys.remove(bucketName);
+        }
+        if (objectKeys != null) {
+            worker.executeOnEventLoop(() -> {
+                for (String objectKey : objectKeys) {
+                    insertObject(bucketName, objectKey);
+                }
+            });
+        }
     }
 
     public boolean isBucketSelected() {
@@ -120,13 +180,17 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
     }
 
     public boolean isObjectSelected() {
-        if (selectedPath == null || selectedPath.getPathCount() <= 2) {
+        return isObjectPath(selectedPath);
+    }
+
+    private static boolean isObjectPath(TreePath path) {
+        if (path == null || path.getPathCount() <= 2) {
             return false;
         }
-        DefaultMutableTreeNode node = (DefaultMutableTreeNode) selectedPath.getLastPathComponent();
+        DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
         if (node.isLeaf()) {
             String name = node.toString();
-            return !name.equals(EMPTY) && !name.equals(LOADING);
+            return !name.equals(EMPTY) && !name.equals(LOADING) && !name.equals(FAILED);
         }
         return false;
     }
@@ -139,6 +203,34 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
         return bucketAndObjectKey(selectedPath).getRight();
     }
 
+    public List<String> getSelectedObjectKeys() {
+        return objectKeys(selectedObjectPaths());
+    }
+
+    private List<String> objectKeys(List<TreePath> paths) {
+        List<String> keys = new ArrayList<>(paths.size());
+        for (TreePath path : paths) {
+            keys.add(bucketAndObjectKey(path).getRight());
+        }
+        return keys;
+    }
+
+    /**
+     * Selected objects in the same bucket as the first selected object.
+     */
+    private List<TreePath> selectedObjectPaths() {
+        List<TreePath> paths = new ArrayList<>();
+        if (isObjectSelected()) {
+            String bucketName = getSelectedBucketName();
+            for (TreePath path : selectedPaths) {
+                if (isObjectPath(path) && bucketAndObjectKey(path).getLeft().equals(bucketName)) {
+                    paths.add(path);
+                }
+            }
+        }
+        return paths;
+    }
+
     public String getCurrentPrefix() {
         if (selectedPath == null || selectedPath.getPathCount() <= 2) {
             return "";
@@ -166,17 +258,29 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
         callback.selectedObject(object);
     }
 
-    public void deleteCurrentObject() {
-        Pair<String, String> pair = bucketAndObjectKey(selectedPath);
-        service.deleteObject(pair.getLeft(), pair.getRight());
+    public Map<String, String> deleteObjects(String bucketName, List<String> objectKeys) {
+        Map<String, String> failures = service.deleteObjects(bucketName, objectKeys);
         worker.executeOnEventLoop(() -> {
-            DefaultMutableTreeNode child = (DefaultMutableTreeNode) selectedPath.getLastPathComponent();
-            DefaultMutableTreeNode parent = (DefaultMutableTreeNode) child.getParent();
-            parent.remove(child);
-            mustBeParent(parent);
-            model.reload(parent);
+            for (String objectKey : objectKeys) {
+                if (!failures.containsKey(objectKey)) {
+                    removeObject(bucketName, objectKey);
+                }
+            }
             selectedPath = null;
+            selectedPaths = Collections.emptyList();
         });
+        return failures;
+    }
+
+    public S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener) {
+        S3DeleteResult result = service.deleteObjectsUnder(bucketName, prefix, listener);
+        if (result.isComplete()) {
+            worker.executeOnEventLoop(() -> removeFolder(bucketName, prefix));
+        } else {
+            // cannot tell which folders are now empty without listing them again
+            refreshObjects(bucketName);
+        }
+        return result;
     }
 
     public void refreshBuckets() {
@@ -195,7 +299,9 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
         if (selectedPath == null) {
             refreshBuckets();
         } else if (isBucketSelected()) {
-            refreshObjects(getSelectedBucketName());
+            String bucketName = getSelectedBucketName();
+            cache.clearCachedListings(bucketName);
+            refreshObjects(bucketName);
         }
     }
 
@@ -211,7 +317,14 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
     }
 
     public void valueChanged(TreeSelectionEvent event) {
-        selectedPath = event.getPath();
+        TreePath lead = event.getNewLeadSelectionPath();
+        selectedPath = (lead != null) ? lead : event.getPath();
+        if (event.getSource() instanceof JTree) {
+            TreePath[] paths = ((JTree) event.getSource()).getSelectionPaths();
+            selectedPaths = (paths != null) ? Arrays.asList(paths) : Collections.emptyList();
+        } else {
+            selectedPaths = Collections.singletonList(selectedPath);
+        }
         Pair<String, String> pair = bucketAndObjectKey(selectedPath);
         String bucketName = pair.getLeft();
         String objectKey = pair.getRight();
@@ -226,7 +339,7 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
         TreePath path = event.getPath();
         DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
         String childName = node.getFirstChild().toString();
-        if (childName.equals(LOADING) || childName.equals(EMPTY)) {
+        if (childName.equals(LOADING) || childName.equals(EMPTY) || childName.equals(FAILED)) {
             executor.execute(() -> loadChildren(bucketAndObjectKey(path), node));
         }
     }
@@ -238,19 +351,178 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
     private void loadChildren(Pair<String, String> bucketAndPrefix, DefaultMutableTreeNode node) {
         String bucketName = bucketAndPrefix.getLeft();
         String prefix = bucketAndPrefix.getRight();
-        S3List res = service.listItemsInBucket(bucketName, prefix);
-        worker.executeOnEventLoop(() -> {
-            node.removeAllChildren();
-            for (String folder : res.getFolders()) {
-                node.add(loadingNode(StringUtils.removeStart(folder, prefix)));
+        NodeFiller filler = new NodeFiller(node, prefix);
+        fillers.put(node, filler);
+        try {
+            service.listItemsInBucket(bucketName, prefix, filler);
+        } catch (Exception e) {
+            logger.warn("Cannot list " + bucketName + "/" + prefix, e);
+            worker.executeOnEventLoop(filler::failed);
+        }
+    }
+
+    /**
+     * Puts a new object into the folders that have already been listed, creating any folders
+     * that it is the first object in. Folders that are yet to be listed will find it when they
+     * are opened, so nothing is listed again and the tree stays as the user had it.
+     */
+    private void insertObject(String bucketName, String objectKey) {
+        DefaultMutableTreeNode node = findChild(root, bucketName);
+        String name = objectKey;
+        while (node != null && isLoaded(node) && !name.isEmpty()) {
+            int end = name.indexOf(Service.DELIMITER) + 1;
+            if (end == 0) {
+                if (findChild(node, name) == null) {
+                    insertNode(node, leafNode(name));
+                }
+                return;
             }
-            for (String file : res.getFiles()) {
-                node.add(leafNode(StringUtils.removeStart(file, prefix)));
+            String folder = name.substring(0, end);
+            name = name.substring(end);
+            DefaultMutableTreeNode child = findChild(node, folder);
+            if (child == null) {
+                insertNode(node, folderNode(folder, name));
+                return;
             }
+            node = child;
+        }
+    }
+
+    /**
+     * Takes the object out of its folder, when that folder has been listed.
+     */
+    private void removeObject(String bucketName, String objectKey) {
+        DefaultMutableTreeNode node = findNode(bucketName, objectKey);
+        if (node != null && !node.getAllowsChildren()) {
+            removeNode(node);
+        }
+    }
+
+    /**
+     * Takes the folder out of the tree, or clears out the bucket when the prefix is empty.
+     */
+    private void removeFolder(String bucketName, String prefix) {
+        DefaultMutableTreeNode node = findNode(bucketName, prefix);
+        if (node == null || !node.getAllowsChildren()) {
+            return;
+        }
+        if (prefix.isEmpty()) {
+            int[] indices = new int[node.getChildCount()];
+            Object[] children = new Object[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = i;
+                children[i] = node.getChildAt(i);
+            }
+            node.removeAllChildren();
+            model.nodesWereRemoved(node, indices, children);
             mustBeParent(node);
-            model.reload(node);
-            selectedPath = null;
-        });
+            model.nodesWereInserted(node, new int[]{0});
+        } else {
+            removeNode(node);
+        }
+    }
+
+    /**
+     * @return node of the folder or file, or null when it is not in the folders listed so far
+     */
+    private DefaultMutableTreeNode findNode(String bucketName, String objectKey) {
+        DefaultMutableTreeNode node = findChild(root, bucketName);
+        String name = objectKey;
+        while (node != null && !name.isEmpty()) {
+            int end = name.indexOf(Service.DELIMITER) + 1;
+            if (end == 0) {
+                return findChild(node, name);
+            }
+            node = findChild(node, name.substring(0, end));
+            name = name.substring(end);
+        }
+        return node;
+    }
+
+    private void insertNode(DefaultMutableTreeNode parent, DefaultMutableTreeNode child) {
+        if (parent.getChildCount() == 1 && parent.getFirstChild().toString().equals(EMPTY)) {
+            TreeNode marker = parent.getFirstChild();
+            parent.remove(0);
+            model.nodesWereRemoved(parent, new int[]{0}, new Object[]{marker});
+        }
+        int index = -search(parent, child.toString(), child.getAllowsChildren()) - 1;
+        parent.insert(child, index);
+        model.nodesWereInserted(parent, new int[]{index});
+    }
+
+    private void removeNode(DefaultMutableTreeNode child) {
+        DefaultMutableTreeNode parent = (DefaultMutableTreeNode) child.getParent();
+        if (parent == null) {
+            return; // already gone
+        }
+        int index = parent.getIndex(child);
+        parent.remove(index);
+        model.nodesWereRemoved(parent, new int[]{index}, new Object[]{child});
+        if (parent.getChildCount() == 0) {
+            mustBeParent(parent);
+            model.nodesWereInserted(parent, new int[]{0});
+        }
+    }
+
+    private DefaultMutableTreeNode findChild(DefaultMutableTreeNode parent, String name) {
+        if (parent == root) {
+            for (int i = 0; i < parent.getChildCount(); i++) {
+                DefaultMutableTreeNode child = (DefaultMutableTreeNode) parent.getChildAt(i);
+                if (child.toString().equals(name)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+        int index = search(parent, name, name.endsWith(Service.DELIMITER));
+        return (index >= 0) ? (DefaultMutableTreeNode) parent.getChildAt(index) : null;
+    }
+
+    /**
+     * Binary search through the folders or the files of a listed node, which are kept in
+     * the same order as S3 lists them.
+     *
+     * @return index of the child, or (-(insertion point) - 1) when there is no such child
+     */
+    private static int search(DefaultMutableTreeNode parent, String name, boolean folder) {
+        int folderCount = folderCount(parent);
+        int low = folder ? 0 : folderCount;
+        int high = (folder ? folderCount : parent.getChildCount()) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = parent.getChildAt(mid).toString().compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int folderCount(DefaultMutableTreeNode parent) {
+        // folders come ahead of files and markers, which are the only ones not allowed children
+        int low = 0;
+        int high = parent.getChildCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (parent.getChildAt(mid).getAllowsChildren()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isLoaded(DefaultMutableTreeNode node) {
+        if (node.getChildCount() == 0) {
+            return false;
+        }
+        String last = node.getLastChild().toString();
+        return !last.equals(LOADING) && !last.equals(FAILED);
     }
 
     private static Pair<String, String> bucketAndObjectKey(TreePath path) {
@@ -277,6 +549,21 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
         return node;
     }
 
+    /**
+     * A folder that did not exist before, so its one object is all there is in it.
+     */
+    private static DefaultMutableTreeNode folderNode(String name, String rest) {
+        DefaultMutableTreeNode folder = new DefaultMutableTreeNode(name);
+        int end = rest.indexOf(Service.DELIMITER) + 1;
+        if (end > 0) {
+            folder.add(folderNode(rest.substring(0, end), rest.substring(end)));
+        } else if (!rest.isEmpty()) {
+            folder.add(leafNode(rest));
+        }
+        mustBeParent(folder);
+        return folder;
+    }
+
     private static DefaultMutableTreeNode loadingNode(String name) {
         DefaultMutableTreeNode parent = new DefaultMutableTreeNode(name);
         parent.add(leafNode(LOADING));
@@ -288,4 +575,106 @@ public class TreeController implements TreeSelectionListener, TreeWillExpandList
             node.add(leafNode(EMPTY));
         }
     }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Adds each page of a listing to the node as it arrives, keeping folders ahead of
+     * files and a loading marker at the end until the last page is in.
+     */
+    private class NodeFiller implements ListingListener {
+
+        private final DefaultMutableTreeNode node;
+        private final String prefix;
+
+        // only touched on the event loop
+        private boolean firstPage = true;
+        private int folderCount;
+
+        public NodeFiller(DefaultMutableTreeNode node, String prefix) {
+            this.node = node;
+            this.prefix = prefix;
+        }
+
+        public void pageLoaded(S3List page, boolean lastPage) {
+            worker.executeOnEventLoop(() -> addPage(page, lastPage));
+        }
+
+        private boolean isLatest() {
+            return fillers.get(node) == this;
+        }
+
+        private void addPage(S3List page, boolean lastPage) {
+            if (!isLatest()) {
+                return; // node has been listed again since
+            }
+            if (lastPage) {
+                fillers.remove(node, this);
+            }
+            if (firstPage) {
+                node.removeAllChildren();
+            } else {
+                removeLoadingMarker();
+            }
+            List<Integer> inserted = new ArrayList<>();
+            for (String folder : page.getFolders()) {
+                node.insert(loadingNode(StringUtils.removeStart(folder, prefix)), folderCount);
+                inserted.add(folderCount++);
+            }
+            int firstAdded = node.getChildCount();
+            for (String file : page.getFiles()) {
+                node.add(leafNode(StringUtils.removeStart(file, prefix)));
+            }
+            if (!lastPage) {
+                node.add(leafNode(LOADING));
+            }
+            for (int i = firstAdded; i < node.getChildCount(); i++) {
+                inserted.add(i);
+            }
+            if (firstPage) {
+                mustBeParent(node);
+                model.reload(node);
+                selectedPath = null;
+                firstPage = false;
+            } else if (!inserted.isEmpty()) {
+                model.nodesWereInserted(node, toArray(inserted));
+            }
+        }
+
+        /**
+         * Swaps the loading marker for a failed one, so that opening the node again has another go.
+         */
+        void failed() {
+            if (!isLatest()) {
+                return;
+            }
+            fillers.remove(node, this);
+            if (firstPage) {
+                node.removeAllChildren();
+                node.add(leafNode(FAILED));
+                model.reload(node);
+                firstPage = false;
+            } else if (removeLoadingMarker()) {
+                node.add(leafNode(FAILED));
+                model.nodesWereInserted(node, new int[]{node.getChildCount() - 1});
+            }
+        }
+
+        private boolean removeLoadingMarker() {
+            int index = node.getChildCount() - 1;
+            if (index < 0 || !node.getChildAt(index).toString().equals(LOADING)) {
+                return false;
+            }
+            TreeNode marker = node.getChildAt(index);
+            node.remove(index);
+            model.nodesWereRemoved(node, new int[]{index}, new Object[]{marker});
+            return true;
+        }
+    }
 }
@@ -28,15 +28,24 @@
 package com.tomczarniecki.s3.gui;
 
 import com.tomczarniecki.s3.FileSize;
+import com.tomczarniecki.s3.NamedThreadFactory;
 import com.tomczarniecki.s3.Pair;
+import com.tomczarniecki.s3.ProgressListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-
-import static com.tomczarniecki.s3.Pair.pair;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 public class UploadWorker {
 
@@ -46,16 +55,26 @@ public class UploadWorker {
     private final Controller controller;
     private final Display display;
 
+    private volatile int concurrency = 1;
+
     public UploadWorker(Controller controller, Display display, SwingWorker worker) {
         this.dialog = display.createProgressDialog("Upload Progress", worker);
         this.controller = controller;
         this.display = display;
     }
 
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
     public void uploadFiles(String bucketName, String prefix, File[] files) {
         dialog.begin();
-        try {
-            uploadFiles(bucketName, resolveKeys(files, prefix));
+        try (FileScanner scanner = new FileScanner(files, prefix)) {
+            uploadFiles(bucketName, prefix, rootKeys(files, prefix), scanner);
             dialog.append("\nDone");
 
         } catch (Exception e) {
@@ -67,62 +86,164 @@ public class UploadWorker {
         }
     }
 
-    private void uploadFiles(String bucketName, List<Pair<String, File>> files) {
-        String plural = (files.size() > 1) ? "files" : "file";
-        dialog.append("Attempting upload of %d %s to bucket %s\n\n", files.size(), plural, bucketName);
+    private void uploadFiles(String bucketName, String prefix, List<String> rootKeys, FileScanner scanner)
+            throws IOException, InterruptedException {
 
-        for (Pair<String, File> entry : files) {
-            uploadFile(bucketName, entry.getLeft(), entry.getRight());
-        }
-    }
+        dialog.append("Attempting upload to bucket %s\n\n", bucketName);
+
+        // the total grows as the scan finds more files
+        Batch batch = new Batch(scanner::getBytesFound);
 
-    private void uploadFile(String bucketName, String objectKey, File file) {
-        if (canCreateObject(bucketName, objectKey, file)) {
-            attemptObjectCreation(bucketName, objectKey, file);
-        } else {
-            dialog.append("File %s not uploaded\n", file.getAbsolutePath());
+        Set<String> existingKeys = existingKeys(bucketName, prefix, rootKeys);
+
+        // overwrite confirmations happen here, one at a time, while the actual
+        // uploads run on a bounded pool so that we never queue more than we run
+        int threads = concurrency;
+        Semaphore permits = new Semaphore(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("s3dropbox-upload-"));
+        try {
+            Pair<String, File> entry;
+            while ((entry = scanner.next()) != null) {
+                String objectKey = entry.getLeft();
+                File file = entry.getRight();
+                if (canCreateObject(existingKeys, bucketName, objectKey, file)) {
+                    permits.acquire();
+                    executor.execute(() -> {
+                        try {
+                            attemptObjectCreation(bucketName, objectKey, file, batch);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } else {
+                    dialog.append("File %s not uploaded\n", file.getAbsolutePath());
+                    batch.skipped(file.length());
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
         }
+        long count = scanner.getFilesFound();
+        dialog.append("\nFound %d %s\n", count, (count != 1) ? "files" : "file");
     }
 
-    private boolean canCreateObject(String bucketName, String objectKey, File file) {
-        if (controller.objectExists(bucketName, objectKey)) {
+    private boolean canCreateObject(Set<String> existingKeys, String bucketName, String objectKey, File file) {
+        if (existingKeys.contains(objectKey)) {
             String message = "File %s already exists in bucket %s.\nDo you want to overwrite?";
             return display.confirmMessage("Oops", String.format(message, file.getName(), bucketName));
         }
         return true;
     }
 
-    private void attemptObjectCreation(String bucketName, String objectKey, File file) {
-        dialog.next();
+    private void attemptObjectCreation(String bucketName, String objectKey, File file, Batch batch) {
+        String description = String.format("File %s (%s) ...", file.getAbsolutePath(), FileSize.format(file.length()));
+        FileProgress progress = new FileProgress(objectKey, batch);
         try {
-            dialog.append("File %s (%s) ...", file.getAbsolutePath(), FileSize.format(file.length()));
-            controller.createObject(bucketName, objectKey, file, dialog);
-            dialog.append(" OK\n");
+            controller.createObject(bucketName, objectKey, file, progress);
+            dialog.append("%s OK\n", description);
 
         } catch (RuntimeException e) {
             logger.warn("Upload failed for " + file, e);
-            dialog.append(" ERROR\n --> %s\n", e.toString());
+            dialog.append("%s ERROR\n --> %s\n", description, e.toString());
+
+        } finally {
+            progress.finished(file.length());
         }
     }
 
-    private List<Pair<String, File>> resolveKeys(File[] files, String prefix) {
-        List<Pair<String, File>> list = new ArrayList<>();
-        resolveFolders(list, files, prefix);
-        return list;
+    /**
+     * One listing for the whole drop rather than a round trip per file, as long as the dropped
+     * files and folders share more than the folder they were dropped into. Otherwise that
+     * listing would take in the whole folder, or the whole bucket, so each dropped file and
+     * folder is listed on its own instead.
+     */
+    private Set<String> existingKeys(String bucketName, String prefix, List<String> rootKeys) {
+        String commonPrefix = commonPrefix(rootKeys);
+        if (commonPrefix.length() > prefix.length()) {
+            return controller.listObjectKeys(bucketName, commonPrefix);
+        }
+        Set<String> keys = new HashSet<>();
+        for (String rootKey : rootKeys) {
+            keys.addAll(controller.listObjectKeys(bucketName, rootKey));
+        }
+        return keys;
     }
 
-    private void resolveFolders(List<Pair<String, File>> list, File[] folder, String prefix) {
-        for (File file : folder) {
-            resolveFile(list, file, prefix);
+    private static String commonPrefix(List<String> keys) {
+        String prefix = null;
+        for (String key : keys) {
+            if (prefix == null) {
+                prefix = key;
+            } else {
+                int length = 0;
+                int max = Math.min(prefix.length(), key.length());
+                while (length < max && prefix.charAt(length) == key.charAt(length)) {
+                    length++;
+                }
+                prefix = prefix.substring(0, length);
+            }
         }
+        return (prefix != null) ? prefix : "";
     }
 
-    @SuppressWarnings("ConstantConditions")
-    private void resolveFile(List<Pair<String, File>> list, File file, String prefix) {
-        if (file.isFile()) {
-            list.add(pair(prefix + file.getName(), file));
-        } else if (file.isDirectory()) {
-            resolveFolders(list, file.listFiles(), prefix + file.getName() + "/");
+    /**
+     * Keys of the dropped files and folders, every key that the scan finds starts with one of these.
+     */
+    private static List<String> rootKeys(File[] files, String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                keys.add(prefix + file.getName() + "/");
+            } else if (file.isFile()) {
+                keys.add(prefix + file.getName());
+            }
+        }
+        return keys;
+    }
+
+    private class Batch {
+
+        private final AtomicLong bytesProcessed = new AtomicLong();
+        private final LongSupplier totalBytes;
+
+        Batch(LongSupplier totalBytes) {
+            this.totalBytes = totalBytes;
+        }
+
+        void processed(long bytes) {
+            dialog.processed(bytesProcessed.addAndGet(bytes), totalBytes.getAsLong());
+        }
+
+        void skipped(long bytes) {
+            processed(bytes);
+        }
+    }
+
+    private class FileProgress implements ProgressListener {
+
+        private final String name;
+        private final Batch batch;
+
+        private long lastCount;
+
+        FileProgress(String name, Batch batch) {
+            this.name = name;
+            this.batch = batch;
+        }
+
+        @Override
+        public synchronized void processed(long count, long length) {
+            batch.processed(count - lastCount);
+            dialog.fileProcessed(name, count, length);
+            lastCount = count;
+        }
+
+        synchronized void finished(long length) {
+            // failed or short-reported uploads still count towards the batch total
+            batch.processed(length - lastCount);
+            dialog.fileFinished(name);
+            lastCount = length;
         }
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.tomczarniecki.s3.ProgressListener;
+import com.tomczarniecki.s3.S3DeleteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Deletes keys a thousand at a time, the most that one DeleteObjects request takes, with
+ * no more requests in flight than it is allowed. Keys that S3 would not delete are handed
+ * back with the reason why, rather than failing the whole lot.
+ */
+class BulkDeleter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkDeleter.class);
+
+    static final int MAX_KEYS_PER_REQUEST = 1000;
+
+    private final AmazonS3 client;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    public BulkDeleter(AmazonS3 client, ExecutorService executor, int maxInFlight) {
+        this.client = client;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Tries every key, however many of them fail.
+     *
+     * @return keys that were not deleted, with the reason why
+     */
+    public Map<String, String> delete(String bucketName, Collection<String> objectKeys) {
+        return delete(bucketName, objectKeys.iterator(), (count, length) -> {
+        }, false).getFailures();
+    }
+
+    /**
+     * Takes keys from the iterator only as fast as they can be deleted, so no more than
+     * {@code maxInFlight} requests' worth are held at any time however many there are.
+     * The listener is told how many keys are done out of those taken so far. Gives up
+     * taking keys once every key in a single request has failed, since by then S3 is
+     * refusing everything rather than tripping over the odd key.
+     */
+    public S3DeleteResult delete(String bucketName, Iterator<String> objectKeys, ProgressListener listener) {
+        return delete(bucketName, objectKeys, listener, true);
+    }
+
+    private S3DeleteResult delete(String bucketName, Iterator<String> objectKeys, ProgressListener listener,
+                                  boolean stopOnFailedRequest) {
+        Deque<Request> requests = new ArrayDeque<>();
+        Map<String, String> failures = new LinkedHashMap<>();
+        boolean requestFailed = false;
+        long taken = 0;
+        long done = 0;
+        try {
+            while (objectKeys.hasNext() && !(stopOnFailedRequest && requestFailed)) {
+                if (requests.size() == maxInFlight) {
+                    Request request = requests.removeFirst();
+                    requestFailed = request.waitFor(failures);
+                    done += request.keyCount;
+                    listener.processed(done, taken);
+                    continue;
+                }
+                List<KeyVersion> keys = new ArrayList<>(MAX_KEYS_PER_REQUEST);
+                while (keys.size() < MAX_KEYS_PER_REQUEST && objectKeys.hasNext()) {
+                    keys.add(new KeyVersion(objectKeys.next()));
+                }
+                taken += keys.size();
+                requests.addLast(new Request(keys.size(), executor.submit(() -> deleteChunk(bucketName, keys))));
+            }
+            while (!requests.isEmpty()) {
+                Request request = requests.removeFirst();
+                request.waitFor(failures);
+                done += request.keyCount;
+                listener.processed(done, taken);
+            }
+        } finally {
+            for (Request request : requests) {
+                request.result.cancel(true);
+            }
+        }
+        boolean stoppedEarly = objectKeys.hasNext();
+        if (stoppedEarly) {
+            logger.warn("Stopped deleting from " + bucketName + " after a whole request failed");
+        }
+        return new S3DeleteResult(failures, stoppedEarly);
+    }
+
+    private Map<String, String> deleteChunk(String bucketName, List<KeyVersion> keys) {
+        DeleteObjectsRequest request = new DeleteObjectsRequest(bucketName)
+                .withKeys(keys)
+                .withQuiet(true); // only tell us about the keys that failed
+        Map<String, String> failures = new LinkedHashMap<>();
+        try {
+            client.deleteObjects(request);
+
+        } catch (MultiObjectDeleteException e) {
+            for (DeleteError error : e.getErrors()) {
+                failures.put(error.getKey(), error.getCode() + ": " + error.getMessage());
+            }
+
+        } catch (AmazonClientException e) {
+            logger.warn("Cannot delete " + keys.size() + " keys from " + bucketName, e);
+            for (KeyVersion key : keys) {
+                failures.put(key.getKey(), e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    private static class Request {
+
+        private final int keyCount;
+        private final Future<Map<String, String>> result;
+
+        public Request(int keyCount, Future<Map<String, String>> result) {
+            this.keyCount = keyCount;
+            this.result = result;
+        }
+
+        /**
+         * @return true when none of this request's keys were deleted
+         */
+        public boolean waitFor(Map<String, String> failures) {
+            Map<String, String> failed = Futures.get(result);
+            failures.putAll(failed);
+            return failed.size() == keyCount;
+        }
+    }
+}
@@ -50,13 +50,15 @@ public class Configuration {
     private final String proxyUserName;
     private final String proxyPassword;
 
+    private final TransferSettings transferSettings;
+
     public Configuration(String accessKeyId, String secretAccessKey) {
-        this(accessKeyId, secretAccessKey, "", "", "", "", "", "", true);
+        this(accessKeyId, secretAccessKey, "", "", "", "", "", "", true, new TransferSettings());
     }
 
     public Configuration(String accessKeyId, String secretAccessKey, String awsRegion, String awsEndpoint,
                          String proxyHost, String proxyPort, String proxyUserName, String proxyPassword,
-                         boolean useSecureProtocol) {
+                         boolean useSecureProtocol, TransferSettings transferSettings) {
 
         this.accessKeyId = accessKeyId;
         this.secretAccessKey = secretAccessKey;
@@ -69,6 +71,8 @@ public class Configuration {
 
         this.proxyUserName = proxyUserName;
         this.proxyPassword = proxyPassword;
+
+        this.transferSettings = transferSettings;
     }
 
     public String getAccessKeyId() {
@@ -107,6 +111,10 @@ public class Configuration {
         return proxyPassword;
     }
 
+    public TransferSettings getTransferSettings() {
+        return transferSettings;
+    }
+
     public AWSCredentials getAWSCredentials() {
         return new BasicAWSCredentials(accessKeyId, secretAccessKey);
     }
@@ -28,11 +28,13 @@
  */
 package com.tomczarniecki.s3.rest;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
+import org.apache.commons.lang.math.NumberUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -45,7 +47,8 @@ public class ConfigurationFactory {
     private enum Keys {
         AMAZON_ACCESS_KEY_ID, AMAZON_SECRET_ACCESS_KEY, AWS_REGION, AWS_ENDPOINT,
         PROXY_HOST, PROXY_PORT, PROXY_USERNAME, PROXY_PASSWORD,
-        USE_SSL
+        USE_SSL, DOWNLOAD_PART_SIZE_MB, DOWNLOAD_THREADS,
+        MULTIPART_THRESHOLD_MB, UPLOAD_PART_SIZE_MB, UPLOAD_THREADS
     }
 
     private final File source;
@@ -65,7 +68,18 @@ public class ConfigurationFactory {
                 getOptional(props, Keys.PROXY_PORT),
                 getOptional(props, Keys.PROXY_USERNAME),
                 getOptional(props, Keys.PROXY_PASSWORD),
-                BooleanUtils.toBoolean(props.getProperty(Keys.USE_SSL.name(), "true"))
+                BooleanUtils.toBoolean(props.getProperty(Keys.USE_SSL.name(), "true")),
+                loadTransferSettings(props)
+        );
+    }
+
+    private TransferSettings loadTransferSettings(Properties props) {
+        return new TransferSettings(
+                getMegabytes(props, Keys.DOWNLOAD_PART_SIZE_MB, TransferSettings.DEFAULT_DOWNLOAD_PART_SIZE),
+                (int) getNumber(props, Keys.DOWNLOAD_THREADS, TransferSettings.DEFAULT_DOWNLOAD_THREADS),
+                getMegabytes(props, Keys.MULTIPART_THRESHOLD_MB, TransferSettings.DEFAULT_MULTIPART_THRESHOLD),
+                getMegabytes(props, Keys.UPLOAD_PART_SIZE_MB, TransferSettings.DEFAULT_UPLOAD_PART_SIZE),
+                (int) getNumber(props, Keys.UPLOAD_THREADS, TransferSettings.DEFAULT_UPLOAD_THREADS)
         );
     }
 
@@ -80,6 +94,12 @@ public class ConfigurationFactory {
         setProperty(props, Keys.PROXY_USERNAME, credentials.getProxyUserName());
         setProperty(props, Keys.PROXY_PASSWORD, credentials.getProxyPassword());
         setProperty(props, Keys.USE_SSL, credentials.useSecureProtocol());
+        TransferSettings transfers = credentials.getTransferSettings();
+        setProperty(props, Keys.DOWNLOAD_PART_SIZE_MB, transfers.getDownloadPartSize() / FileUtils.ONE_MB);
+        setProperty(props, Keys.DOWNLOAD_THREADS, transfers.getDownloadThreads());
+        setProperty(props, Keys.MULTIPART_THRESHOLD_MB, transfers.getMultipartThreshold() / FileUtils.ONE_MB);
+        setProperty(props, Keys.UPLOAD_PART_SIZE_MB, transfers.getUploadPartSize() / FileUtils.ONE_MB);
+        setProperty(props, Keys.UPLOAD_THREADS, transfers.getUploadThreads());
         saveProperties(props);
     }
 
@@ -95,6 +115,14 @@ public class ConfigurationFactory {
         return props.getProperty(key.name(), "");
     }
 
+    private long getNumber(Properties props, Keys key, long defaultValue) {
+        return NumberUtils.toLong(props.getProperty(key.name()), defaultValue);
+    }
+
+    private long getMegabytes(Properties props, Keys key, long defaultBytes) {
+        return getNumber(props, key, defaultBytes / FileUtils.ONE_MB) * FileUtils.ONE_MB;
+    }
+
     private void setProperty(Properties props, Keys key, Object value) {
         props.setProperty(key.name(), ObjectUtils.toString(value));
     }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sidecar file that records which byte ranges of a download have made it to disk,
+ * along with the ETag and length of the object being downloaded. The first line holds
+ * the length and ETag, every line after that holds the start and end of a finished range.
+ */
+class DownloadJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadJournal.class);
+
+    public static final String SUFFIX = ".s3part";
+
+    private final TreeMap<Long, Long> completed = new TreeMap<>();
+    private final File file;
+    private final String eTag;
+    private final long length;
+
+    private DownloadJournal(File file, String eTag, long length) {
+        this.file = file;
+        this.eTag = eTag;
+        this.length = length;
+    }
+
+    public static DownloadJournal open(File target, String eTag, long length) throws IOException {
+        DownloadJournal journal = new DownloadJournal(new File(target.getPath() + SUFFIX), eTag, length);
+        if (!target.isFile() || !journal.load()) {
+            journal.reset();
+        }
+        return journal;
+    }
+
+    public synchronized long completedBytes() {
+        long total = 0;
+        for (Map.Entry<Long, Long> range : completed.entrySet()) {
+            total += range.getValue() - range.getKey() + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Gaps between the finished ranges, cut up into pieces no bigger than {@code partSize}.
+     */
+    public synchronized List<long[]> missingRanges(long partSize) {
+        List<long[]> missing = new ArrayList<>();
+        long next = 0;
+        for (Map.Entry<Long, Long> range : completed.entrySet()) {
+            addRanges(missing, next, range.getKey() - 1, partSize);
+            next = Math.max(next, range.getValue() + 1);
+        }
+        addRanges(missing, next, length - 1, partSize);
+        return missing;
+    }
+
+    public synchronized void completed(long start, long end) throws IOException {
+        completed.put(start, end);
+        append(start + " " + end + "\n");
+    }
+
+    public void delete() {
+        if (file.exists() && !file.delete()) {
+            logger.warn("Cannot delete download journal " + file);
+        }
+    }
+
+    private boolean load() throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(header())) {
+            logger.info("Object has changed since " + file + " was written, not resuming");
+            return false;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] range = line.split(" ");
+            if (range.length == 2) {
+                long start = NumberUtils.toLong(range[0], -1);
+                long end = NumberUtils.toLong(range[1], -1);
+                if (start >= 0 && end >= start) { // last line may be partial after a crash
+                    completed.put(start, end);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void reset() throws IOException {
+        completed.clear();
+        Files.write(file.toPath(), (header() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String header() {
+        return length + " " + eTag;
+    }
+
+    private void append(String line) throws IOException {
+        Files.write(file.toPath(), line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static void addRanges(List<long[]> ranges, long start, long end, long partSize) {
+        for (long from = start; from <= end; from += partSize) {
+            ranges.add(new long[]{from, Math.min(from + partSize - 1, end)});
+        }
+    }
+}
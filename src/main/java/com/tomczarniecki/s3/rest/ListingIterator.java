@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.tomczarniecki.s3.S3Object;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks through every object under a prefix one page at a time, asking for the next
+ * page as soon as the current one arrives so that S3 is working while the caller is
+ * busy with the current page. No more than two pages are held at once.
+ */
+class ListingIterator implements Iterator<S3Object> {
+
+    private final AmazonS3 client;
+    private final ExecutorService executor;
+    private final String bucketName;
+    private final String prefix;
+
+    private Iterator<S3ObjectSummary> current = Collections.emptyIterator();
+    private Future<ListObjectsV2Result> next;
+
+    public ListingIterator(AmazonS3 client, ExecutorService executor, String bucketName, String prefix) {
+        this.client = client;
+        this.executor = executor;
+        this.bucketName = bucketName;
+        this.prefix = prefix;
+        this.next = fetch(null);
+    }
+
+    /**
+     * Lazy stream over the listing, close it to stop any page that is still on its way.
+     */
+    public static Stream<S3Object> stream(AmazonS3 client, ExecutorService executor, String bucketName, String prefix) {
+        ListingIterator iterator = new ListingIterator(client, executor, bucketName, prefix);
+        Spliterator<S3Object> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (next == null) {
+                return false;
+            }
+            ListObjectsV2Result page = Futures.get(next);
+            next = page.isTruncated() ? fetch(page.getNextContinuationToken()) : null;
+            current = page.getObjectSummaries().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public S3Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return WebClientService.toS3Object(current.next());
+    }
+
+    public void close() {
+        if (next != null) {
+            next.cancel(true);
+            next = null;
+        }
+        current = Collections.emptyIterator();
+    }
+
+    private Future<ListObjectsV2Result> fetch(String continuationToken) {
+        ListObjectsV2Request request = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withContinuationToken(continuationToken);
+        if (!prefix.isEmpty()) {
+            request = request.withPrefix(prefix);
+        }
+        ListObjectsV2Request pageRequest = request;
+        return executor.submit(() -> client.listObjectsV2(pageRequest));
+    }
+}
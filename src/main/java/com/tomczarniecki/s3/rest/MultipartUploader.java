@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.tomczarniecki.s3.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Uploads a file as a multipart upload, recording the upload id and each finished part in an
+ * {@link UploadJournal} so that uploading the same file again after a crash or restart only
+ * sends the parts that S3 does not have yet.
+ */
+class MultipartUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultipartUploader.class);
+
+    // well under the 10,000 part limit, and 5TB (largest object) / 1000 is 5GB (largest part)
+    private static final int TARGET_PARTS = 1000;
+
+    private final AmazonS3 client;
+    private final ExecutorService executor;
+    private final File stateDir;
+    private final long minPartSize;
+
+    public MultipartUploader(AmazonS3 client, ExecutorService executor, File stateDir, long minPartSize) {
+        this.client = client;
+        this.executor = executor;
+        this.stateDir = stateDir;
+        this.minPartSize = minPartSize;
+    }
+
+    public void upload(String bucketName, String objectKey, File source, ObjectMetadata metadata, ProgressListener listener) {
+        try {
+            UploadJournal journal = UploadJournal.open(stateDir, bucketName, objectKey, source);
+            Map<Integer, PartSummary> uploaded = null;
+            if (journal.getUploadId() != null) {
+                uploaded = uploadedParts(bucketName, objectKey, journal);
+            }
+            if (uploaded == null) {
+                InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucketName, objectKey, metadata);
+                String uploadId = client.initiateMultipartUpload(request).getUploadId();
+                journal.started(uploadId, partSize(source.length()));
+                uploaded = new TreeMap<>();
+            } else {
+                logger.info("Resuming upload of " + source + " with " + uploaded.size() + " parts already on S3");
+            }
+            uploadMissingParts(bucketName, objectKey, source, journal, uploaded, listener);
+            journal.delete();
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void forget(String bucketName) {
+        UploadJournal.deleteAll(stateDir, bucketName);
+    }
+
+    /**
+     * Parts grow with the file so that large uploads don't turn into tens of thousands of
+     * small requests, but never drop below the configured minimum.
+     */
+    public long partSize(long length) {
+        return Math.max(minPartSize, (length + TARGET_PARTS - 1) / TARGET_PARTS);
+    }
+
+    private void uploadMissingParts(String bucketName, String objectKey, File source, UploadJournal journal,
+                                    Map<Integer, PartSummary> uploaded, ProgressListener listener) {
+        long length = source.length();
+        long partSize = journal.getPartSize();
+        int partCount = (int) Math.max(1, (length + partSize - 1) / partSize);
+
+        long alreadyUploaded = 0;
+        for (PartSummary part : uploaded.values()) {
+            alreadyUploaded += part.getSize();
+        }
+        ProgressListenerAdaptor progress = new ProgressListenerAdaptor(listener, length, alreadyUploaded);
+
+        Map<Integer, PartETag> eTags = new ConcurrentSkipListMap<>();
+        for (PartSummary part : uploaded.values()) {
+            eTags.put(part.getPartNumber(), new PartETag(part.getPartNumber(), part.getETag()));
+        }
+        List<Future<?>> parts = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+            if (eTags.containsKey(partNumber)) {
+                continue;
+            }
+            long offset = (partNumber - 1) * partSize;
+            UploadPartRequest request = new UploadPartRequest()
+                    .withBucketName(bucketName)
+                    .withKey(objectKey)
+                    .withUploadId(journal.getUploadId())
+                    .withPartNumber(partNumber)
+                    .withFile(source)
+                    .withFileOffset(offset)
+                    .withPartSize(Math.min(partSize, length - offset))
+                    .withLastPart(partNumber == partCount);
+            request.setGeneralProgressListener(progress);
+            parts.add(executor.submit(() -> {
+                PartETag eTag = client.uploadPart(request).getPartETag();
+                journal.completed(eTag.getPartNumber(), eTag.getETag());
+                eTags.put(eTag.getPartNumber(), eTag);
+                return null;
+            }));
+        }
+        Futures.waitFor(parts);
+
+        client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, objectKey,
+                journal.getUploadId(), new ArrayList<>(eTags.values())));
+    }
+
+    /**
+     * Parts that both S3 and the journal agree on, or null when the upload is no longer there.
+     */
+    private Map<Integer, PartSummary> uploadedParts(String bucketName, String objectKey, UploadJournal journal) {
+        Map<Integer, String> recorded = journal.getCompletedParts();
+        Map<Integer, PartSummary> uploaded = new TreeMap<>();
+        ListPartsRequest request = new ListPartsRequest(bucketName, objectKey, journal.getUploadId());
+        try {
+            PartListing listing;
+            do {
+                listing = client.listParts(request);
+                for (PartSummary part : listing.getParts()) {
+                    if (part.getETag().equals(recorded.get(part.getPartNumber()))) {
+                        uploaded.put(part.getPartNumber(), part);
+                    }
+                }
+                request.setPartNumberMarker(listing.getNextPartNumberMarker());
+            } while (listing.isTruncated());
+            return uploaded;
+
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                logger.info("Upload " + journal.getUploadId() + " for " + objectKey + " has gone, starting again");
+                return null;
+            }
+            throw e;
+        }
+    }
+}
@@ -35,9 +35,14 @@ public class ProgressListenerAdaptor implements com.amazonaws.event.ProgressList
 
     private final ProgressListener delegate;
     private final long totalBytesToTransfer;
-    private final AtomicLong bytesTransferred = new AtomicLong(0);
+    private final AtomicLong bytesTransferred;
 
     public ProgressListenerAdaptor(ProgressListener delegate, long totalBytesToTransfer) {
+        this(delegate, totalBytesToTransfer, 0);
+    }
+
+    public ProgressListenerAdaptor(ProgressListener delegate, long totalBytesToTransfer, long bytesAlreadyTransferred) {
+        this.bytesTransferred = new AtomicLong(bytesAlreadyTransferred);
         this.totalBytesToTransfer = totalBytesToTransfer;
         this.delegate = delegate;
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.tomczarniecki.s3.ProgressListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches an object as a set of byte ranges that run side by side on the given executor.
+ * Each range is written straight to its place in a preallocated target file, and noted
+ * in a {@link DownloadJournal} so that a later attempt only fetches what is missing.
+ */
+class RangedDownloader {
+
+    private final AmazonS3 client;
+    private final ExecutorService executor;
+    private final FileChannelSink sink;
+    private final long partSize;
+
+    public RangedDownloader(AmazonS3 client, ExecutorService executor, FileChannelSink sink, long partSize) {
+        this.client = client;
+        this.executor = executor;
+        this.sink = sink;
+        this.partSize = partSize;
+    }
+
+    public void download(String bucketName, String objectKey, String eTag, long length,
+                         File target, ProgressListener listener) {
+        try {
+            DownloadJournal journal = DownloadJournal.open(target, eTag, length);
+            downloadMissingParts(journal, bucketName, objectKey, eTag, length, target, listener);
+            journal.delete();
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void downloadMissingParts(DownloadJournal journal, String bucketName, String objectKey, String eTag,
+                                      long length, File target, ProgressListener listener) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            file.setLength(length);
+            FileChannel channel = file.getChannel();
+            AtomicLong transferred = new AtomicLong(journal.completedBytes());
+            listener.processed(transferred.get(), length);
+
+            List<Future<?>> parts = new ArrayList<>();
+            for (long[] range : journal.missingRanges(partSize)) {
+                long start = range[0];
+                long end = range[1];
+                GetObjectRequest request = new GetObjectRequest(bucketName, objectKey)
+                        .withRange(start, end)
+                        .withMatchingETagConstraint(eTag);
+                parts.add(executor.submit(() -> {
+                    downloadPart(request, channel, start, length, transferred, listener);
+                    journal.completed(start, end);
+                    return null;
+                }));
+            }
+            Futures.waitFor(parts);
+        }
+    }
+
+    private void downloadPart(GetObjectRequest request, FileChannel channel, long position, long length,
+                              AtomicLong transferred, ProgressListener listener) throws IOException {
+        S3Object object = client.getObject(request);
+        if (object == null) {
+            // etag constraint failed, someone replaced the object part way through
+            throw new IllegalStateException("Object " + request.getKey() + " changed during download");
+        }
+        S3ObjectInputStream input = object.getObjectContent();
+        try {
+            sink.write(input, channel, position, count -> listener.processed(transferred.addAndGet(count), length));
+
+        } catch (IOException | RuntimeException e) {
+            // don't drain the rest of the range back into the connection pool
+            input.abort();
+            throw e;
+
+        } finally {
+            input.close();
+        }
+    }
+}
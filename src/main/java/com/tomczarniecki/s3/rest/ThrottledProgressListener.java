@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.tomczarniecki.s3.ProgressListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Only passes progress on once enough bytes or enough time has gone by since the
+ * last update, and always passes on completion. Each update ends up as an event
+ * on the Swing thread, so there is no point sending one for every buffer.
+ */
+class ThrottledProgressListener implements ProgressListener {
+
+    private final ProgressListener delegate;
+    private final long minBytes;
+    private final long minIntervalNanos;
+
+    private long lastCount = -1;
+    private long lastTime;
+
+    public ThrottledProgressListener(ProgressListener delegate, long minBytes, long minIntervalMillis) {
+        this.delegate = delegate;
+        this.minBytes = minBytes;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+    }
+
+    public static ThrottledProgressListener forLength(ProgressListener delegate, long length) {
+        // at most about a hundred updates by size, and ten a second by time
+        return new ThrottledProgressListener(delegate, Math.max(1024 * 1024, length / 100), 100);
+    }
+
+    @Override
+    public synchronized void processed(long count, long length) {
+        if (count <= lastCount) {
+            return; // parallel ranges can report out of order
+        }
+        long now = System.nanoTime();
+        boolean done = count >= length;
+        boolean due = (lastCount < 0)
+                || (count - lastCount >= minBytes)
+                || (now - lastTime >= minIntervalNanos);
+        if (done || due) {
+            lastCount = count;
+            lastTime = now;
+            delegate.processed(count, length);
+        }
+    }
+}
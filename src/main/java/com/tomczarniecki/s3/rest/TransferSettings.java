@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import org.apache.commons.io.FileUtils;
+
+public class TransferSettings {
+
+    public static final long DEFAULT_DOWNLOAD_PART_SIZE = 16 * FileUtils.ONE_MB;
+    public static final int DEFAULT_DOWNLOAD_THREADS = 8;
+
+    public static final long DEFAULT_MULTIPART_THRESHOLD = 16 * FileUtils.ONE_MB;
+    public static final long DEFAULT_UPLOAD_PART_SIZE = 8 * FileUtils.ONE_MB;
+    public static final int DEFAULT_UPLOAD_THREADS = 10;
+
+    // S3 will not accept parts smaller than this, apart from the last one
+    private static final long MIN_UPLOAD_PART_SIZE = 5 * FileUtils.ONE_MB;
+
+    private final long downloadPartSize;
+    private final int downloadThreads;
+    private final long multipartThreshold;
+    private final long uploadPartSize;
+    private final int uploadThreads;
+
+    public TransferSettings() {
+        this(DEFAULT_DOWNLOAD_PART_SIZE, DEFAULT_DOWNLOAD_THREADS,
+                DEFAULT_MULTIPART_THRESHOLD, DEFAULT_UPLOAD_PART_SIZE, DEFAULT_UPLOAD_THREADS);
+    }
+
+    public TransferSettings(long downloadPartSize, int downloadThreads,
+                            long multipartThreshold, long uploadPartSize, int uploadThreads) {
+        this.downloadPartSize = Math.max(FileUtils.ONE_MB, downloadPartSize);
+        this.downloadThreads = Math.max(1, downloadThreads);
+        this.uploadPartSize = Math.max(MIN_UPLOAD_PART_SIZE, uploadPartSize);
+        // anything smaller would go to the transfer manager's own multipart uploads, whose
+        // parts then wait for threads in the pool that the upload itself is holding on to
+        this.multipartThreshold = Math.max(this.uploadPartSize, multipartThreshold);
+        this.uploadThreads = Math.max(1, uploadThreads);
+    }
+
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    public int getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    /**
+     * Files larger than this are uploaded in parts, never less than the upload part size.
+     */
+    public long getMultipartThreshold() {
+        return multipartThreshold;
+    }
+
+    /**
+     * Smallest part used for multipart uploads, larger files get larger parts.
+     */
+    public long getUploadPartSize() {
+        return uploadPartSize;
+    }
+
+    public int getUploadThreads() {
+        return uploadThreads;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * State file for a multipart upload, kept outside the source folder so that it can be picked
+ * up again after a crash or restart. There is one file per bucket, object key and version of
+ * the source file. The first line holds the upload id and part size, every line after that
+ * holds the number and ETag of a finished part.
+ */
+class UploadJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadJournal.class);
+
+    private final TreeMap<Integer, String> completed = new TreeMap<>();
+    private final File file;
+
+    private String uploadId;
+    private long partSize;
+
+    private UploadJournal(File file) {
+        this.file = file;
+    }
+
+    public static UploadJournal open(File stateDir, String bucketName, String objectKey, File source) throws IOException {
+        String identity = objectKey + "\n" + source.getAbsolutePath() + "\n" + source.length() + "\n" + source.lastModified();
+        String name = UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)) + ".upload";
+        File bucketDir = new File(stateDir, bucketName);
+        FileUtils.forceMkdir(bucketDir);
+        UploadJournal journal = new UploadJournal(new File(bucketDir, name));
+        journal.load();
+        return journal;
+    }
+
+    /**
+     * Forgets about all uploads to the given bucket, used when they have been aborted on S3.
+     */
+    public static void deleteAll(File stateDir, String bucketName) {
+        FileUtils.deleteQuietly(new File(stateDir, bucketName));
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public synchronized Map<Integer, String> getCompletedParts() {
+        return new TreeMap<>(completed);
+    }
+
+    public synchronized void started(String uploadId, long partSize) throws IOException {
+        this.uploadId = uploadId;
+        this.partSize = partSize;
+        completed.clear();
+        Files.write(file.toPath(), (uploadId + " " + partSize + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized void completed(int partNumber, String eTag) throws IOException {
+        completed.put(partNumber, eTag);
+        String line = partNumber + " " + eTag + "\n";
+        Files.write(file.toPath(), line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    public void delete() {
+        if (file.exists() && !file.delete()) {
+            logger.warn("Cannot delete upload journal " + file);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        String[] header = lines.isEmpty() ? new String[0] : lines.get(0).split(" ");
+        if (header.length != 2 || NumberUtils.toLong(header[1]) <= 0) {
+            logger.info("Ignoring unreadable upload journal " + file);
+            return;
+        }
+        uploadId = header[0];
+        partSize = NumberUtils.toLong(header[1]);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] part = line.split(" ");
+            int partNumber = (part.length == 2) ? NumberUtils.toInt(part[0]) : 0;
+            if (partNumber > 0) { // last line may be partial after a crash
+                completed.put(partNumber, part[1]);
+            }
+        }
+    }
+}
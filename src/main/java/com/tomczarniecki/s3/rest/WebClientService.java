@@ -47,53 +47,89 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
+import com.tomczarniecki.s3.ListingListener;
+import com.tomczarniecki.s3.NamedThreadFactory;
 import com.tomczarniecki.s3.ProgressListener;
 import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3DeleteResult;
 import com.tomczarniecki.s3.S3List;
 import com.tomczarniecki.s3.S3Object;
 import com.tomczarniecki.s3.S3ObjectList;
 import com.tomczarniecki.s3.Service;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.SystemUtils;
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public class WebClientService implements Service {
 
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int DELETE_THREADS = 8;
+    private static final int LISTING_THREADS = 8;
+    private static final File UPLOAD_STATE_DIR = new File(SystemUtils.USER_HOME, ".s3dropbox-uploads");
+
     private final AmazonS3 client;
     private final boolean createBucketsAllowed;
     private final TransferManager transferManager;
     private final Map<String, String> videoContentTypes;
+    private final ExecutorService downloadExecutor;
+    private final RangedDownloader rangedDownloader;
+    private final FileChannelSink sink;
+    private final long downloadPartSize;
+    private final ExecutorService uploadExecutor;
+    private final MultipartUploader multipartUploader;
+    private final long multipartThreshold;
+    private final ExecutorService listingExecutor;
+    private final ExecutorService deleteExecutor;
+    private final BulkDeleter bulkDeleter;
 
     public WebClientService(Configuration config) {
         // proper HTML5 video content types so that browsers can play the videos
         videoContentTypes = Map.of("ogv", "video/ogg", "mp4", "video/mp4", "webm", "video/webm");
         createBucketsAllowed = isAwsRegion(config.getAwsRegion());
-        AmazonS3ClientBuilder builder = AmazonS3Client.builder()
-                .withCredentials(new AWSStaticCredentialsProvider(config.getAWSCredentials()))
-                .withClientConfiguration(config.getClientConfiguration());
-        EndpointConfiguration endpointCfg = config.getEndpointConfiguration();
-        if (endpointCfg != null) {
-            builder = builder.withEndpointConfiguration(endpointCfg);
-        } else {
-            builder = builder.withRegion(config.getAwsRegion());
-        }
-        client = builder.build();
+        client = createClient(config);
+        TransferSettings settings = config.getTransferSettings();
+        uploadExecutor = threadPool("s3dropbox-upload-part-", settings.getUploadThreads());
+        multipartThreshold = settings.getMultipartThreshold();
+        multipartUploader = new MultipartUploader(client, uploadExecutor, UPLOAD_STATE_DIR, settings.getUploadPartSize());
         transferManager = TransferManagerBuilder.standard()
                 .withS3Client(client)
+                .withMultipartUploadThreshold(settings.getMultipartThreshold())
+                .withMinimumUploadPartSize(settings.getUploadPartSize())
+                // share the pool with the resumable uploads, it is shut down in close(), which
+                // is safe as anything over the threshold goes to the resumable uploads instead
+                // so that the transfer manager only ever makes single requests
+                .withExecutorFactory(() -> uploadExecutor)
+                .withShutDownThreadPools(false)
                 .build();
+        downloadPartSize = settings.getDownloadPartSize();
+        downloadExecutor = threadPool("s3dropbox-download-", settings.getDownloadThreads());
+        sink = new FileChannelSink(new BufferPool(settings.getDownloadThreads() + 1, BUFFER_SIZE));
+        rangedDownloader = new RangedDownloader(client, downloadExecutor, sink, downloadPartSize);
+        // each open listing has at most one page being fetched ahead
+        listingExecutor = threadPool("s3dropbox-listing-", LISTING_THREADS);
+        deleteExecutor = threadPool("s3dropbox-delete-", DELETE_THREADS);
+        bulkDeleter = new BulkDeleter(client, deleteExecutor, DELETE_THREADS);
     }
 
     @Override
@@ -143,56 +179,91 @@ public class WebClientService implements Service {
         ObjectListing listing = client.listObjects(req);
         List<S3Object> objects = new ArrayList<>();
         for (S3ObjectSummary summary : listing.getObjectSummaries()) {
-            DateTime lastModified = new DateTime(summary.getLastModified());
-            lastModified = lastModified.toDateTime(DateTimeZone.getDefault());
-            objects.add(new S3Object(summary.getKey(), summary.getSize(), lastModified.toLocalDateTime()));
+            objects.add(toS3Object(summary));
         }
-        Collections.sort(objects);
         String next = StringUtils.defaultString(listing.getNextMarker());
         return new S3ObjectList(objects, next, nextMarker.isEmpty());
     }
 
+    @Override
+    public Stream<S3Object> streamObjectsInBucket(String bucketName, String prefix) {
+        return ListingIterator.stream(client, listingExecutor, bucketName, prefix);
+    }
+
     @Override
     public S3List listItemsInBucket(String bucketName, String prefix) {
+        List<String> folders = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        listItemsInBucket(bucketName, prefix, (page, lastPage) -> {
+            folders.addAll(page.getFolders());
+            files.addAll(page.getFiles());
+        });
+        // each page is in key order and carries on from the last one
+        return new S3List(folders, files);
+    }
+
+    @Override
+    public void listItemsInBucket(String bucketName, String prefix, ListingListener listener) {
         ListObjectsV2Request req = new ListObjectsV2Request()
                 .withBucketName(bucketName)
                 .withDelimiter(DELIMITER);
         if (!prefix.isEmpty()) {
             req = req.withPrefix(prefix);
         }
-        ListObjectsV2Result res = client.listObjectsV2(req);
-        List<String> folders = res.getCommonPrefixes();
-        Collections.sort(folders);
-        List<String> files = new ArrayList<>();
-        for (S3ObjectSummary summary : res.getObjectSummaries()) {
-            String key = summary.getKey();
-            if (!key.endsWith(DELIMITER)) {
-                files.add(key);
+        ListObjectsV2Result res;
+        do {
+            res = client.listObjectsV2(req);
+            List<String> folders = new ArrayList<>(res.getCommonPrefixes());
+            List<String> files = new ArrayList<>();
+            for (S3ObjectSummary summary : res.getObjectSummaries()) {
+                String key = summary.getKey();
+                if (!key.endsWith(DELIMITER)) {
+                    files.add(key);
+                }
             }
-        }
-        Collections.sort(files);
-        return new S3List(folders, files);
+            listener.pageLoaded(new S3List(folders, files), !res.isTruncated());
+            req.setContinuationToken(res.getNextContinuationToken());
+        } while (res.isTruncated());
     }
 
     public boolean objectExists(String bucketName, String objectKey) {
-        ObjectListing objectListing = client.listObjects(bucketName, objectKey);
-        for (S3ObjectSummary summary : objectListing.getObjectSummaries()) {
-            if (summary.getKey().equals(objectKey)) {
-                return true;
-            }
+        // HEAD request, 404 is reported as false rather than as an exception
+        return client.doesObjectExist(bucketName, objectKey);
+    }
+
+    @Override
+    public Set<String> listObjectKeys(String bucketName, String prefix) {
+        ListObjectsV2Request req = new ListObjectsV2Request()
+                .withBucketName(bucketName);
+        if (!prefix.isEmpty()) {
+            req = req.withPrefix(prefix);
         }
-        return false;
+        Set<String> keys = new HashSet<>();
+        ListObjectsV2Result res;
+        do {
+            res = client.listObjectsV2(req);
+            for (S3ObjectSummary summary : res.getObjectSummaries()) {
+                keys.add(summary.getKey());
+            }
+            req.setContinuationToken(res.getNextContinuationToken());
+        } while (res.isTruncated());
+        return keys;
     }
 
     public void createObject(String bucketName, String objectKey, File source, ProgressListener listener) {
-        PutObjectRequest request = new PutObjectRequest(bucketName, objectKey, source);
+        ObjectMetadata md = new ObjectMetadata();
         String contentType = videoContentTypes.get(FilenameUtils.getExtension(source.getName()));
         if (contentType != null) {
-            ObjectMetadata md = new ObjectMetadata();
             md.setContentType(contentType);
-            request.setMetadata(md);
         }
-        request.setGeneralProgressListener(new ProgressListenerAdaptor(listener, source.length()));
+        long length = source.length();
+        if (length > multipartThreshold && length > multipartUploader.partSize(length)) {
+            // resumable, unlike the transfer manager's own multipart uploads
+            multipartUploader.upload(bucketName, objectKey, source, md, listener);
+            return;
+        }
+        PutObjectRequest request = new PutObjectRequest(bucketName, objectKey, source).withMetadata(md);
+        request.setGeneralProgressListener(new ProgressListenerAdaptor(listener, length));
         try {
             Upload upload = transferManager.upload(request);
             upload.waitForCompletion();
@@ -205,13 +276,18 @@ public class WebClientService implements Service {
     @Override
     public S3Object getObject(String bucketName, String objectKey) {
         ObjectMetadata md = client.getObjectMetadata(bucketName, objectKey);
-        DateTime lastModified = new DateTime(md.getLastModified());
-        lastModified = lastModified.toDateTime(DateTimeZone.getDefault());
-        return new S3Object(objectKey, md.getInstanceLength(), lastModified.toLocalDateTime());
+        return new S3Object(objectKey, md.getInstanceLength(), md.getLastModified().getTime());
     }
 
     public void downloadObject(String bucketName, String objectKey, File target, ProgressListener listener) {
-        writeToFile(client.getObject(bucketName, objectKey), target, listener);
+        ObjectMetadata md = client.getObjectMetadata(bucketName, objectKey);
+        long length = md.getContentLength();
+        ProgressListener throttled = ThrottledProgressListener.forLength(listener, length);
+        if (length > downloadPartSize) {
+            rangedDownloader.download(bucketName, objectKey, md.getETag(), length, target, throttled);
+        } else {
+            writeToFile(client.getObject(bucketName, objectKey), target, throttled);
+        }
     }
 
     public String getPublicUrl(String bucketName, String objectKey, DateTime expires) {
@@ -222,30 +298,59 @@ public class WebClientService implements Service {
         client.deleteObject(bucketName, objectKey);
     }
 
+    @Override
+    public Map<String, String> deleteObjects(String bucketName, Collection<String> objectKeys) {
+        return bulkDeleter.delete(bucketName, objectKeys);
+    }
+
+    @Override
+    public S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener) {
+        try (Stream<S3Object> objects = streamObjectsInBucket(bucketName, prefix)) {
+            return bulkDeleter.delete(bucketName, objects.map(S3Object::getKey).iterator(), listener);
+        }
+    }
+
     public void removeFailedUploads(String bucketName) {
         transferManager.abortMultipartUploads(bucketName, new Date());
+        multipartUploader.forget(bucketName);
     }
 
     public void close() {
         transferManager.shutdownNow();
+        downloadExecutor.shutdownNow();
+        uploadExecutor.shutdownNow();
+        listingExecutor.shutdownNow();
+        deleteExecutor.shutdownNow();
     }
 
-    private static void writeToFile(com.amazonaws.services.s3.model.S3Object object, File target, ProgressListener listener) {
+    private void writeToFile(com.amazonaws.services.s3.model.S3Object object, File target, ProgressListener listener) {
         long fileLength = object.getObjectMetadata().getContentLength();
-        OutputStream output = null;
-        InputStream input = null;
-        try {
-            input = object.getObjectContent();
-            output = new ProgressOutputStream(new FileOutputStream(target), listener, fileLength);
-            IOUtils.copy(input, output);
+        AtomicLong transferred = new AtomicLong();
+        try (InputStream input = object.getObjectContent();
+             FileChannel output = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            sink.write(input, output, 0, count -> listener.processed(transferred.addAndGet(count), fileLength));
 
         } catch (IOException e) {
             throw new RuntimeException(e);
+        }
+    }
+
+    static S3Object toS3Object(S3ObjectSummary summary) {
+        return new S3Object(summary.getKey(), summary.getSize(), summary.getLastModified().getTime());
+    }
 
-        } finally {
-            IOUtils.closeQuietly(input);
-            IOUtils.closeQuietly(output);
+    static AmazonS3 createClient(Configuration config) {
+        AmazonS3ClientBuilder builder = AmazonS3Client.builder()
+                .withCredentials(new AWSStaticCredentialsProvider(config.getAWSCredentials()))
+                .withClientConfiguration(config.getClientConfiguration());
+        EndpointConfiguration endpointCfg = config.getEndpointConfiguration();
+        if (endpointCfg != null) {
+            builder = builder.withEndpointConfiguration(endpointCfg);
+        } else {
+            builder = builder.withRegion(config.getAwsRegion());
         }
+        return builder.build();
     }
 
     private static boolean isAwsRegion(String awsRegion) {
@@ -256,4 +361,14 @@ public class WebClientService implements Service {
             return false;
         }
     }
+
+    /**
+     * Threads come and go with the work, so an idle service holds none of them.
+     */
+    private static ExecutorService threadPool(String prefix, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory(prefix));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
 }
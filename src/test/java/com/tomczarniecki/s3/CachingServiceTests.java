@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3;
+
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingServiceTests {
+
+    @Mock
+    Service delegate;
+
+    private final S3List rootItems = new S3List(Collections.singletonList("folder/"), Collections.<String>emptyList());
+    private final S3List folderItems = new S3List(Collections.<String>emptyList(), Collections.singletonList("folder/file"));
+
+    private CachingService service;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(1000);
+        service = new CachingService(delegate, 100, 2);
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void shouldListFolderOnceUntilListingExpires() {
+        given(delegate.listItemsInBucket("bucket", "folder/")).willReturn(folderItems);
+
+        assertThat(service.listItemsInBucket("bucket", "folder/"), sameInstance(folderItems));
+        assertThat(service.listItemsInBucket("bucket", "folder/"), sameInstance(folderItems));
+        verify(delegate, times(1)).listItemsInBucket("bucket", "folder/");
+
+        DateTimeUtils.setCurrentMillisFixed(1100);
+        service.listItemsInBucket("bucket", "folder/");
+        verify(delegate, times(2)).listItemsInBucket("bucket", "folder/");
+    }
+
+    @Test
+    public void shouldDropListingsOfFoldersThatHoldUploadedObject() {
+        givenRootAndFolderListings();
+
+        service.listItemsInBucket("bucket", "");
+        service.listItemsInBucket("bucket", "folder/");
+        service.createObject("bucket", "other/file", new File("file"), null);
+
+        service.listItemsInBucket("bucket", "");
+        service.listItemsInBucket("bucket", "folder/");
+        verify(delegate, times(2)).listItemsInBucket("bucket", "");
+        verify(delegate, times(1)).listItemsInBucket("bucket", "folder/");
+    }
+
+    @Test
+    public void shouldDropListingsOfFoldersThatHeldDeletedObject() {
+        givenRootAndFolderListings();
+
+        service.listItemsInBucket("bucket", "");
+        service.listItemsInBucket("bucket", "folder/");
+        service.deleteObject("bucket", "folder/file");
+
+        service.listItemsInBucket("bucket", "");
+        service.listItemsInBucket("bucket", "folder/");
+        verify(delegate, times(2)).listItemsInBucket("bucket", "");
+        verify(delegate, times(2)).listItemsInBucket("bucket", "folder/");
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedListing() {
+        givenRootAndFolderListings();
+        given(delegate.listItemsInBucket("bucket", "other/")).willReturn(folderItems);
+
+        service.listItemsInBucket("bucket", "");
+        service.listItemsInBucket("bucket", "folder/");
+        service.listItemsInBucket("bucket", "");
+        service.listItemsInBucket("bucket", "other/");
+
+        service.listItemsInBucket("bucket", "");
+        service.listItemsInBucket("bucket", "folder/");
+        verify(delegate, times(1)).listItemsInBucket("bucket", "");
+        verify(delegate, times(2)).listItemsInBucket("bucket", "folder/");
+    }
+
+    @Test
+    public void shouldGoBackToS3WhenAskedToClearListings() {
+        given(delegate.listItemsInBucket("bucket", "folder/")).willReturn(folderItems);
+
+        service.listItemsInBucket("bucket", "folder/");
+        service.clearCachedListings("bucket");
+
+        service.listItemsInBucket("bucket", "folder/");
+        verify(delegate, times(2)).listItemsInBucket("bucket", "folder/");
+    }
+
+    private void givenRootAndFolderListings() {
+        given(delegate.listItemsInBucket("bucket", "")).willReturn(rootItems);
+        given(delegate.listItemsInBucket("bucket", "folder/")).willReturn(folderItems);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3;
+
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class FileSizeTests {
+
+    @Test
+    public void shouldFormatEachUnit() {
+        assertThat(FileSize.format(0), equalTo("0 bytes"));
+        assertThat(FileSize.format(1023), equalTo("1023 bytes"));
+        assertThat(FileSize.format(1024), equalTo("1.0 KB"));
+        assertThat(FileSize.format(1536 * 1024), equalTo("1.5 MB"));
+        assertThat(FileSize.format(1234567890123L), equalTo("1,149.8 GB"));
+    }
+
+    @Test
+    public void shouldRoundHalfToEven() {
+        assertThat(FileSize.format(1076), equalTo("1.1 KB")); // 1.05078125
+        assertThat(FileSize.format(1280), equalTo("1.2 KB")); // exactly 1.25
+        assertThat(FileSize.format(1792), equalTo("1.8 KB")); // exactly 1.75
+    }
+
+    @Test
+    public void shouldAppendToGivenBuilder() {
+        StringBuilder out = new StringBuilder("size: ");
+        assertThat(FileSize.format(2048, out).toString(), equalTo("size: 2.0 KB"));
+    }
+
+    @Test
+    public void shouldMatchDecimalFormatFromManyThreadsAtOnce() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                long seed = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return countMismatches(new Random(seed), 100000);
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertThat(result.get(), equalTo(0));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int countMismatches(Random random, int count) {
+        DecimalFormat format = new DecimalFormat(",##0.0");
+        int mismatches = 0;
+        for (int i = 0; i < count; i++) {
+            long size = (long) Math.pow(2, random.nextDouble() * 44);
+            if (!FileSize.format(size).equals(expected(format, size))) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private static String expected(DecimalFormat format, long size) {
+        long[] units = {1L << 30, 1L << 20, 1L << 10};
+        String[] names = {" GB", " MB", " KB"};
+        for (int i = 0; i < units.length; i++) {
+            if (size / units[i] > 0) {
+                return format.format(((double) size) / units[i]) + names[i];
+            }
+        }
+        return size + " bytes";
+    }
+}
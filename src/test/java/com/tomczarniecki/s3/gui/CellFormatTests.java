@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import org.joda.time.LocalDateTime;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CellFormatTests {
+
+    @Test
+    public void shouldFormatSizes() {
+        assertThat(CellFormat.size(5), equalTo("5 bytes"));
+        assertThat(CellFormat.size(2048), equalTo("2.0 KB"));
+        assertThat(CellFormat.size(3 * 1024 * 1024 + 512 * 1024), equalTo("3.5 MB"));
+    }
+
+    @Test
+    public void shouldFormatTimesToTheSecond() {
+        long millis = new LocalDateTime(2021, 3, 4, 5, 6, 7, 890).toDateTime().getMillis();
+        assertThat(CellFormat.lastModified(millis), equalTo("2021/03/04 05:06:07"));
+    }
+
+    @Test
+    public void shouldReuseTextForValuesFormattedBefore() {
+        long millis = new LocalDateTime(2021, 3, 4, 5, 6, 7).toDateTime().getMillis();
+        assertThat(CellFormat.lastModified(millis + 100), sameInstance(CellFormat.lastModified(millis)));
+        assertThat(CellFormat.size(123456), sameInstance(CellFormat.size(123456)));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3Object;
+import com.tomczarniecki.s3.S3ObjectList;
+import com.tomczarniecki.s3.Service;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.anyString;
+import static org.mockito.BDDMockito.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeleteObjectActionTests {
+
+    @Mock
+    Display display;
+
+    @Mock(answer = Answers.RETURNS_SMART_NULLS)
+    Service service;
+
+    @Test
+    public void shouldDeleteOnlyTheConfirmedObjectsWhenSelectionChangesAfterwards() {
+        List<S3Object> objects = List.of(object("a"), object("b"), object("c"));
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        given(service.listObjectsInBucket("bucket", "")).willReturn(new S3ObjectList(objects, "", true));
+        given(service.deleteObjects(eq("bucket"), eq(List.of("a", "b")))).willReturn(Map.of());
+        given(display.confirmMessage(eq("Just Checking"), anyString())).willReturn(true);
+
+        DirectWorker worker = new DirectWorker();
+        TableController controller = new TableController(service, worker);
+        controller.refreshBuckets();
+        controller.updateSelectedName(0);
+        controller.showObjects(false);
+        controller.updateSelectedNames(new int[]{1, 2}); // a, b
+
+        List<Runnable> queued = new ArrayList<>();
+        DeleteObjectAction action = new DeleteObjectAction(controller, display, queued::add, worker);
+        action.actionPerformed(null);
+
+        controller.updateSelectedNames(new int[]{3}); // c
+        queued.forEach(Runnable::run);
+
+        verify(service).deleteObjects("bucket", List.of("a", "b"));
+        assertThat(controller.getModel().getRowCount(), equalTo(2)); // back link, c
+    }
+
+    private static S3Object object(String key) {
+        return new S3Object(key, 1, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.S3Object;
+import com.tomczarniecki.s3.S3ObjectList;
+import org.junit.Test;
+
+import javax.swing.JTable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class DropBoxRowSorterTests {
+
+    private static final int NAME = DropBoxTableModel.Column.FILE_NAME.ordinal();
+    private static final int SIZE = DropBoxTableModel.Column.SIZE.ordinal();
+
+    private final FakeLoader loader = new FakeLoader();
+    private final DropBoxTableModel model = new DropBoxTableModel(new DirectWorker(), loader, 2);
+    private final DropBoxRowSorter sorter = new DropBoxRowSorter(model);
+    private final JTable table = new JTable(model);
+
+    {
+        table.setRowSorter(sorter);
+    }
+
+    @Test
+    public void shouldKeepListingOrderUntilHeaderIsClicked() {
+        model.updatedObjects("bucket", page(true, "c", object("b", 3), object("a", 1), object("c", 2)), "");
+
+        assertThat(viewOrder(), equalTo(List.of(0, 1, 2, 3, 4)));
+    }
+
+    @Test
+    public void shouldSortUpThenDownThenGoBackToListingOrderKeepingLinksInPlace() {
+        model.updatedObjects("bucket", page(true, "c", object("b", 3), object("a", 1), object("c", 2)), "");
+
+        sorter.toggleSortOrder(SIZE);
+        assertThat(viewOrder(), equalTo(List.of(0, 2, 3, 1, 4)));
+
+        sorter.toggleSortOrder(SIZE);
+        assertThat(viewOrder(), equalTo(List.of(0, 1, 3, 2, 4)));
+
+        sorter.toggleSortOrder(SIZE);
+        assertThat(viewOrder(), equalTo(List.of(0, 1, 2, 3, 4)));
+    }
+
+    @Test
+    public void shouldSortKeysIgnoringCase() {
+        model.updatedObjects("bucket", page(true, "", object("b/x", 1), object("B/a", 1), object("a", 1)), "");
+
+        sorter.toggleSortOrder(NAME);
+
+        assertThat(viewOrder(), equalTo(List.of(0, 3, 2, 1)));
+    }
+
+    @Test
+    public void shouldSortAppendedPagesIntoPlace() {
+        model.updatedObjects("bucket", page(true, "b", object("a", 3), object("b", 1)), "");
+        sorter.toggleSortOrder(SIZE);
+
+        model.updatedObjects("bucket", page(false, "", object("c", 2)), "b");
+
+        assertThat(viewOrder(), equalTo(List.of(0, 2, 3, 1)));
+    }
+
+    @Test
+    public void shouldListForgottenPagesAgainWhenSorted() {
+        model.updatedObjects("bucket", page(true, "a", object("a", 1)), "");
+        model.updatedObjects("bucket", page(false, "b", object("b", 3)), "a");
+        model.getValueAt(2, NAME); // looking at second page
+        model.updatedObjects("bucket", page(false, "", object("c", 2)), "b");
+
+        sorter.toggleSortOrder(SIZE);
+        // first page was forgotten, so it waits at the end until it is listed again
+        assertThat(loader.markers, equalTo(List.of("")));
+        assertThat(viewOrder(), equalTo(List.of(0, 3, 2, 1)));
+
+        loader.callback.pageLoaded(page(true, "a", object("a", 1)));
+        assertThat(viewOrder(), equalTo(List.of(0, 1, 3, 2)));
+        assertThat(table.getValueAt(1, NAME), equalTo("a"));
+    }
+
+    @Test
+    public void shouldGoBackToListingOrderForNewListing() {
+        model.updatedObjects("bucket", page(true, "", object("b", 3), object("a", 1)), "");
+        sorter.toggleSortOrder(SIZE);
+
+        model.updatedObjects("bucket", page(true, "", object("d", 3), object("c", 1)), "");
+
+        assertThat(sorter.getSortKeys().isEmpty(), equalTo(true));
+        assertThat(viewOrder(), equalTo(List.of(0, 1, 2)));
+    }
+
+    private List<Integer> viewOrder() {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < table.getRowCount(); i++) {
+            rows.add(table.convertRowIndexToModel(i));
+        }
+        return rows;
+    }
+
+    private static S3Object object(String key, long size) {
+        return new S3Object(key, size, 0);
+    }
+
+    private static S3ObjectList page(boolean firstPage, String nextMarker, S3Object... objects) {
+        return new S3ObjectList(List.of(objects), nextMarker, firstPage);
+    }
+
+    private static class FakeLoader implements DropBoxTableModel.PageLoader {
+
+        List<String> markers = new ArrayList<>();
+        PageCallback callback;
+
+        public void loadNextPage(Runnable failed) {
+        }
+
+        public void loadPage(String marker, PageCallback callback) {
+            this.markers.add(marker);
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.S3Object;
+import com.tomczarniecki.s3.S3ObjectList;
+import org.junit.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DropBoxTableModelTests {
+
+    private final FakeLoader loader = new FakeLoader();
+    private final DropBoxTableModel model = new DropBoxTableModel(new DirectWorker(), loader, 2);
+
+    @Test
+    public void shouldInsertRowsForAppendedPages() {
+        List<String> events = new ArrayList<>();
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+        model.addTableModelListener(e -> events.add(describe(e)));
+
+        model.updatedObjects("bucket", page(false, "", "c", "d"), "b");
+
+        // rows: back link, a, b, more -> back link, a, b, c, d
+        assertThat(model.getRowCount(), equalTo(5));
+        assertThat(events, equalTo(List.of("update 3-3", "insert 4-4")));
+    }
+
+    @Test
+    public void shouldAskForNextPageOnceWhenMoreLinkIsPainted() {
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+
+        assertThat(model.getNameAt(3), equalTo(Constants.MORE_LINK));
+        model.getValueAt(3, 1);
+
+        assertThat(loader.nextPageRequests, equalTo(1));
+    }
+
+    @Test
+    public void shouldAskForNextPageAgainAfterItFailed() {
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+        model.getValueAt(3, 1);
+
+        loader.nextPageFailed.run();
+        model.getValueAt(3, 1);
+
+        assertThat(loader.nextPageRequests, equalTo(2));
+    }
+
+    @Test
+    public void shouldListForgottenPageAgainAfterItFailed() {
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+        model.updatedObjects("bucket", page(false, "d", "c", "d"), "b");
+        model.getValueAt(3, 1); // looking at second page
+        model.updatedObjects("bucket", page(false, "", "e", "f"), "d");
+        model.getValueAt(1, 1);
+        model.getValueAt(1, 1);
+
+        loader.callback.pageFailed();
+        model.getValueAt(1, 1);
+
+        assertThat(loader.markers, equalTo(List.of("", "")));
+    }
+
+    @Test
+    public void shouldForgetPagesFurthestFromViewAndListThemAgainWhenNeeded() {
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+        model.updatedObjects("bucket", page(false, "d", "c", "d"), "b");
+        model.getValueAt(3, 1); // looking at second page
+        model.updatedObjects("bucket", page(false, "", "e", "f"), "d");
+
+        // first page is furthest from the second and third
+        assertThat(model.getNameAt(1), equalTo(Constants.LOADING_LINK));
+        assertThat(loader.markers, equalTo(List.of("")));
+
+        loader.callback.pageLoaded(page(true, "b", "a", "b"));
+        assertThat(model.getNameAt(1), equalTo("a"));
+        assertThat(model.getNameAt(2), equalTo("b"));
+    }
+
+    @Test
+    public void shouldLeaveObjectSizesAndTimesForRenderersToFormat() {
+        List<S3Object> objects = List.of(new S3Object("photos/2021/a.jpg", 2048, 1614834367000L));
+        model.updatedObjects("bucket", new S3ObjectList(objects, "", true), "");
+
+        assertThat(model.getNameAt(1), equalTo("photos/2021/a.jpg"));
+        assertThat(model.getValueAt(1, 1), equalTo("photos/2021/a.jpg"));
+        assertThat(model.getValueAt(1, 2), equalTo(2048L));
+        assertThat(model.getValueAt(1, 3), equalTo(1614834367000L));
+        assertThat(model.getValueAt(0, 2), nullValue());
+    }
+
+    @Test
+    public void shouldPutUploadedObjectIntoItsPageWithoutListingAgain() {
+        List<String> events = new ArrayList<>();
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+        model.updatedObjects("bucket", page(false, "", "c", "d"), "b");
+        model.addTableModelListener(e -> events.add(describe(e)));
+
+        model.objectsCreated("bucket", List.of(new S3Object("bb", 1, 0)));
+
+        assertThat(names(), equalTo(List.of("a", "b", "bb", "c", "d")));
+        assertThat(events, equalTo(List.of("insert 3-3")));
+        assertThat(loader.markers, equalTo(List.of()));
+    }
+
+    @Test
+    public void shouldUpdateRowOfObjectThatWasUploadedAgain() {
+        List<String> events = new ArrayList<>();
+        model.updatedObjects("bucket", page(true, "", "a", "b"), "");
+        model.addTableModelListener(e -> events.add(describe(e)));
+
+        model.objectsCreated("bucket", List.of(new S3Object("a", 5, 0)));
+
+        assertThat(names(), equalTo(List.of("a", "b")));
+        assertThat(model.getValueAt(1, 2), equalTo(5L));
+        assertThat(events, equalTo(List.of("update 1-1")));
+    }
+
+    @Test
+    public void shouldLeaveObjectsAfterListedPagesToTurnUpWithNextPage() {
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+
+        model.objectsCreated("bucket", List.of(new S3Object("z", 1, 0)));
+
+        assertThat(names(), equalTo(List.of("a", "b")));
+    }
+
+    @Test
+    public void shouldLeaveOutObjectsOfBucketThatIsNoLongerShown() {
+        model.updatedObjects("bucket", page(true, "", "a", "b"), "");
+        model.updatedObjects("other", page(true, "", "c", "d"), "");
+
+        model.objectsCreated("bucket", List.of(new S3Object("cc", 1, 0)));
+        model.objectsDeleted("bucket", List.of("c"));
+
+        assertThat(names(), equalTo(List.of("c", "d")));
+    }
+
+    @Test
+    public void shouldTakeDeletedObjectsOutOfTheirPages() {
+        List<String> events = new ArrayList<>();
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+        model.updatedObjects("bucket", page(false, "", "c", "d"), "b");
+        model.addTableModelListener(e -> events.add(describe(e)));
+
+        model.objectsDeleted("bucket", List.of("a", "d"));
+
+        assertThat(names(), equalTo(List.of("b", "c")));
+        assertThat(events, equalTo(List.of("delete 1-1", "delete 3-3")));
+    }
+
+    @Test
+    public void shouldListForgottenPageAgainUntilItsRangeIsFilled() {
+        model.updatedObjects("bucket", page(true, "b", "a", "b"), "");
+        model.updatedObjects("bucket", page(false, "d", "c", "d"), "b");
+        model.getValueAt(3, 1); // looking at second page
+        model.updatedObjects("bucket", page(false, "", "e", "f"), "d");
+        model.objectsCreated("bucket", List.of(new S3Object("aa", 1, 0))); // into the forgotten first page
+
+        assertThat(model.getNameAt(1), equalTo(Constants.LOADING_LINK));
+        loader.callback.pageLoaded(page(true, "aa", "a", "aa"));
+        loader.callback.pageLoaded(page(false, "d", "b", "c"));
+
+        assertThat(loader.markers, equalTo(List.of("", "aa")));
+        assertThat(model.getNameAt(1), equalTo("a"));
+        assertThat(model.getNameAt(2), equalTo("aa"));
+        assertThat(model.getNameAt(3), equalTo("b"));
+        assertThat(model.getNameAt(4), equalTo("c"));
+        // back link, a, aa, b, c, d, e, f
+        assertThat(model.getRowCount(), equalTo(8));
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (int i = 1; i < model.getRowCount(); i++) {
+            String name = model.getNameAt(i);
+            if (!name.equals(Constants.MORE_LINK)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static S3ObjectList page(boolean firstPage, String nextMarker, String... keys) {
+        List<S3Object> objects = new ArrayList<>();
+        for (String key : keys) {
+            objects.add(new S3Object(key, 1, System.currentTimeMillis()));
+        }
+        return new S3ObjectList(objects, nextMarker, firstPage);
+    }
+
+    private static String describe(TableModelEvent e) {
+        String type = (e.getType() == TableModelEvent.INSERT) ? "insert"
+                : (e.getType() == TableModelEvent.DELETE) ? "delete" : "update";
+        return type + " " + e.getFirstRow() + "-" + e.getLastRow();
+    }
+
+    private static class FakeLoader implements DropBoxTableModel.PageLoader {
+
+        int nextPageRequests;
+        Runnable nextPageFailed;
+        List<String> markers = new ArrayList<>();
+        PageCallback callback;
+
+        public void loadNextPage(Runnable failed) {
+            nextPageRequests++;
+            nextPageFailed = failed;
+        }
+
+        public void loadPage(String marker, PageCallback callback) {
+            this.markers.add(marker);
+            this.callback = callback;
+        }
+    }
+}
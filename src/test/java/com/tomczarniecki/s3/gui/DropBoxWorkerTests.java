@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import org.junit.Test;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class DropBoxWorkerTests {
+
+    @Test
+    public void shouldRunCommandsOnNamedThreads() throws Exception {
+        DropBoxWorker worker = new DropBoxWorker(1, 10);
+        AtomicReference<String> name = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        worker.executeInBackground(() -> {
+            name.set(Thread.currentThread().getName());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(name.get().startsWith("s3dropbox-worker-"));
+        worker.shutdown();
+    }
+
+    @Test
+    public void shouldQueueCommandsBeyondPoolSize() throws Exception {
+        DropBoxWorker worker = new DropBoxWorker(1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        worker.executeInBackground(blocked);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        worker.executeInBackground(blocked);
+        worker.executeInBackground(blocked);
+
+        assertThat(worker.getQueueDepth(), equalTo(2));
+        assertThat(worker.getActiveCount(), equalTo(1));
+
+        release.countDown();
+        worker.shutdown();
+        assertThat(worker.getCompletedTaskCount(), equalTo(3L));
+    }
+
+    @Test
+    public void shouldRunCommandOnCallerWhenQueueIsFull() throws Exception {
+        DropBoxWorker worker = new DropBoxWorker(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        worker.executeInBackground(blocked);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        worker.executeInBackground(blocked);
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        worker.executeInBackground(() -> thread.set(Thread.currentThread()));
+
+        assertThat(thread.get(), equalTo(Thread.currentThread()));
+        assertThat(worker.getQueueDepth(), equalTo(1));
+
+        release.countDown();
+        worker.shutdown();
+        assertThat(worker.getCompletedTaskCount(), equalTo(3L));
+    }
+
+    @Test
+    public void shouldTurnAwayCommandFromEventLoopWhenQueueIsFull() throws Exception {
+        DropBoxWorker worker = new DropBoxWorker(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AtomicInteger busy = new AtomicInteger();
+        worker.setBusyListener(busy::incrementAndGet);
+
+        worker.executeInBackground(blocked);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        worker.executeInBackground(blocked);
+
+        AtomicInteger ran = new AtomicInteger();
+        SwingUtilities.invokeAndWait(() -> worker.executeInBackground(ran::incrementAndGet));
+
+        assertThat(ran.get(), equalTo(0));
+        assertThat(busy.get(), equalTo(1));
+        assertThat(worker.getQueueDepth(), equalTo(1));
+
+        release.countDown();
+        worker.shutdown();
+        assertThat(worker.getCompletedTaskCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldFallBackToPlatformThreadsWithoutVirtualThreadSupport() throws Exception {
+        DropBoxWorker worker = DropBoxWorker.create(true);
+        AtomicReference<String> name = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        worker.executeInBackground(() -> {
+            name.set(Thread.currentThread().getName());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        String expected = VirtualThreads.isSupported() ? "s3dropbox-virtual-" : "s3dropbox-worker-";
+        assertTrue(name.get().startsWith(expected));
+        worker.shutdown();
+    }
+}
@@ -28,6 +28,7 @@
 package com.tomczarniecki.s3.gui;
 
 import com.tomczarniecki.s3.Pair;
+import com.tomczarniecki.s3.ProgressListener;
 import com.tomczarniecki.s3.S3Bucket;
 import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
@@ -41,10 +42,20 @@ import org.mockito.runners.MockitoJUnitRunner;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
-
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.anyString;
+import static org.mockito.BDDMockito.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.mock;
+import static org.mockito.BDDMockito.never;
 import static org.mockito.BDDMockito.verify;
+import static org.mockito.BDDMockito.willAnswer;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FileDropListenerTests {
@@ -81,8 +92,8 @@ public class FileDropListenerTests {
         FileDropListener listener = new FileDropListener(controller, display, worker, uploader);
         listener.filesDropped(new File[]{file1, file2});
 
-        verify(controller).createObject("foo", "bar/file1.jpg", file1, dialog);
-        verify(controller).createObject("foo", "bar/file2.doc", file2, dialog);
+        verify(controller).createObject(eq("foo"), eq("bar/file1.jpg"), eq(file1), any(ProgressListener.class));
+        verify(controller).createObject(eq("foo"), eq("bar/file2.doc"), eq(file2), any(ProgressListener.class));
     }
 
     @Test
@@ -109,7 +120,110 @@ public class FileDropListenerTests {
         FileDropListener listener = new FileDropListener(controller, display, worker, uploader);
         listener.filesDropped(new File[]{directory});
 
-        verify(controller).createObject("foo", "bar/folder/file1.jpg", file1, dialog);
-        verify(controller).createObject("foo", "bar/folder/file2.doc", file2, dialog);
+        verify(controller).createObject(eq("foo"), eq("bar/folder/file1.jpg"), eq(file1), any(ProgressListener.class));
+        verify(controller).createObject(eq("foo"), eq("bar/folder/file2.doc"), eq(file2), any(ProgressListener.class));
+    }
+
+    @Test
+    public void shouldUploadFilesInParallel() throws IOException {
+        given(controller.listAllMyBuckets()).willReturn(List.of(new S3Bucket("test")));
+        given(controller.getSelectedBucketName()).willReturn("bucket");
+        given(controller.getCurrentPrefix()).willReturn("prefix/");
+
+        given(display.chooseBucketDialog(List.of("test"))).willReturn(chooseDialog);
+        given(chooseDialog.get("bucket", "prefix/")).willReturn(Pair.pair("foo", "bar/"));
+
+        DirectWorker worker = new DirectWorker();
+        ProgressDialog dialog = mock(ProgressDialog.class);
+        given(display.createProgressDialog("Upload Progress", worker)).willReturn(dialog);
+
+        File directory = folder.newFolder("folder");
+        File[] files = new File[10];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(directory, "file" + i + ".txt");
+            FileUtils.writeStringToFile(files[i], "file" + i);
+        }
+
+        // each upload waits until another one has started, which never happens one at a time
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch twoStarted = new CountDownLatch(2);
+        willAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            twoStarted.countDown();
+            twoStarted.await(5, TimeUnit.SECONDS);
+            inFlight.decrementAndGet();
+            return null;
+        }).given(controller).createObject(eq("foo"), anyString(), any(File.class), any(ProgressListener.class));
+
+        UploadWorker uploader = new UploadWorker(controller, display, worker);
+        uploader.setConcurrency(4);
+
+        FileDropListener listener = new FileDropListener(controller, display, worker, uploader);
+        listener.filesDropped(new File[]{directory});
+
+        assertTrue(maxInFlight.get() >= 2);
+        for (int i = 0; i < files.length; i++) {
+            verify(controller).createObject(eq("foo"), eq("bar/folder/file" + i + ".txt"), eq(files[i]), any(ProgressListener.class));
+        }
+    }
+
+    @Test
+    public void shouldCheckForExistingFilesWithOneListingAndSkipThoseNotToBeOverwritten() throws IOException {
+        given(controller.listAllMyBuckets()).willReturn(List.of(new S3Bucket("test")));
+        given(controller.getSelectedBucketName()).willReturn("bucket");
+        given(controller.getCurrentPrefix()).willReturn("prefix/");
+        given(controller.listObjectKeys("foo", "bar/folder/")).willReturn(Set.of("bar/folder/file1.jpg"));
+
+        given(display.chooseBucketDialog(List.of("test"))).willReturn(chooseDialog);
+        given(chooseDialog.get("bucket", "prefix/")).willReturn(Pair.pair("foo", "bar/"));
+        given(display.confirmMessage(eq("Oops"), anyString())).willReturn(false);
+
+        DirectWorker worker = new DirectWorker();
+        ProgressDialog dialog = mock(ProgressDialog.class);
+        given(display.createProgressDialog("Upload Progress", worker)).willReturn(dialog);
+
+        File directory = folder.newFolder("folder");
+        File file1 = new File(directory, "file1.jpg");
+        File file2 = new File(directory, "file2.doc");
+
+        FileUtils.touch(file1);
+        FileUtils.touch(file2);
+
+        UploadWorker uploader = new UploadWorker(controller, display, worker);
+        FileDropListener listener = new FileDropListener(controller, display, worker, uploader);
+        listener.filesDropped(new File[]{directory});
+
+        verify(controller, never()).objectExists(anyString(), anyString());
+        verify(controller, never()).createObject(eq("foo"), eq("bar/folder/file1.jpg"), eq(file1), any(ProgressListener.class));
+        verify(controller).createObject(eq("foo"), eq("bar/folder/file2.doc"), eq(file2), any(ProgressListener.class));
+    }
+
+    @Test
+    public void shouldListEachDroppedFileOnItsOwnRatherThanTheWholeFolder() throws IOException {
+        given(controller.listAllMyBuckets()).willReturn(List.of(new S3Bucket("test")));
+        given(controller.getSelectedBucketName()).willReturn("bucket");
+        given(controller.getCurrentPrefix()).willReturn("prefix/");
+        given(controller.listObjectKeys("foo", "bar/apple.jpg")).willReturn(Set.of("bar/apple.jpg"));
+        given(controller.listObjectKeys("foo", "bar/pear.doc")).willReturn(Set.of());
+
+        given(display.chooseBucketDialog(List.of("test"))).willReturn(chooseDialog);
+        given(chooseDialog.get("bucket", "prefix/")).willReturn(Pair.pair("foo", "bar/"));
+        given(display.confirmMessage(eq("Oops"), anyString())).willReturn(false);
+
+        DirectWorker worker = new DirectWorker();
+        ProgressDialog dialog = mock(ProgressDialog.class);
+        given(display.createProgressDialog("Upload Progress", worker)).willReturn(dialog);
+
+        File file1 = folder.newFile("apple.jpg");
+        File file2 = folder.newFile("pear.doc");
+
+        UploadWorker uploader = new UploadWorker(controller, display, worker);
+        FileDropListener listener = new FileDropListener(controller, display, worker, uploader);
+        listener.filesDropped(new File[]{file1, file2});
+
+        verify(controller, never()).listObjectKeys("foo", "bar/");
+        verify(controller, never()).createObject(eq("foo"), eq("bar/apple.jpg"), eq(file1), any(ProgressListener.class));
+        verify(controller).createObject(eq("foo"), eq("bar/pear.doc"), eq(file2), any(ProgressListener.class));
     }
 }
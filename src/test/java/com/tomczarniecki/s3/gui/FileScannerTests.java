@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.Pair;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FileScannerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldFindFilesInDroppedFoldersWithTheirKeys() throws Exception {
+        File directory = folder.newFolder("folder");
+        File nested = new File(directory, "a/b/nested.txt");
+        File top = new File(directory, "top.txt");
+        File single = folder.newFile("single.jpg");
+        FileUtils.writeStringToFile(nested, "nested");
+        FileUtils.writeStringToFile(top, "top");
+
+        Map<String, File> found = new HashMap<>();
+        try (FileScanner scanner = new FileScanner(new File[]{directory, single}, "bar/")) {
+            Pair<String, File> entry;
+            while ((entry = scanner.next()) != null) {
+                found.put(entry.getLeft(), entry.getRight());
+            }
+            assertThat(scanner.getFilesFound(), equalTo(3L));
+            assertThat(scanner.getBytesFound(), equalTo(9L));
+            assertThat(scanner.next(), nullValue());
+        }
+
+        assertThat(found.size(), equalTo(3));
+        assertThat(found.get("bar/folder/a/b/nested.txt"), equalTo(nested));
+        assertThat(found.get("bar/folder/top.txt"), equalTo(top));
+        assertThat(found.get("bar/single.jpg"), equalTo(single));
+    }
+
+    @Test
+    public void shouldHandOverFilesBeforeTheScanIsDone() throws Exception {
+        File directory = folder.newFolder("folder");
+        for (int i = 0; i < 10; i++) {
+            FileUtils.touch(new File(directory, "file" + i));
+        }
+
+        try (FileScanner scanner = new FileScanner(new File[]{directory}, "", 1)) {
+            // scan is held up by the full queue until we take from it
+            assertThat(scanner.next().getLeft().startsWith("folder/file"), equalTo(true));
+            Thread.sleep(100);
+            assertThat(scanner.getFilesFound() < 10, equalTo(true));
+        }
+    }
+
+    @Test(timeout = 5000, expected = RuntimeException.class)
+    public void shouldHandOverFailureThatIsNotAnIOException() throws Exception {
+        try (FileScanner scanner = new FileScanner(new File[]{null}, "")) {
+            scanner.next();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshCoalescerTests {
+
+    @Test
+    public void shouldRunLastOfManyRefreshesOnceThingsGoQuiet() throws Exception {
+        RefreshCoalescer coalescer = new RefreshCoalescer(100, 10000);
+        List<Integer> runs = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 1000; i++) {
+            int run = i;
+            coalescer.refresh("bucket", () -> {
+                runs.add(run);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        assertThat(runs, equalTo(List.of(999)));
+    }
+
+    @Test
+    public void shouldKeepRefreshesForDifferentKeysApart() throws Exception {
+        RefreshCoalescer coalescer = new RefreshCoalescer(50, 10000);
+        CountDownLatch done = new CountDownLatch(2);
+
+        coalescer.refresh("one", done::countDown);
+        coalescer.refresh("two", done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldNotPutOffRefreshForeverWhileItKeepsBeingAskedFor() throws Exception {
+        RefreshCoalescer coalescer = new RefreshCoalescer(200, 400);
+        CountDownLatch done = new CountDownLatch(1);
+
+        long finish = System.currentTimeMillis() + 3000;
+        while (done.getCount() > 0 && System.currentTimeMillis() < finish) {
+            coalescer.refresh("bucket", done::countDown);
+            Thread.sleep(20);
+        }
+
+        assertThat(done.getCount(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldRunStraightAwayWithoutQuietPeriod() {
+        RefreshCoalescer coalescer = new RefreshCoalescer(0, 0);
+        List<String> runs = new CopyOnWriteArrayList<>();
+
+        coalescer.refresh("bucket", () -> runs.add("bucket"));
+
+        assertThat(runs, equalTo(List.of("bucket")));
+    }
+}
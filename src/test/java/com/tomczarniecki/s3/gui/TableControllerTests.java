@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3Object;
+import com.tomczarniecki.s3.S3ObjectList;
+import com.tomczarniecki.s3.Service;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TableControllerTests {
+
+    @Mock(answer = Answers.RETURNS_SMART_NULLS)
+    Service service;
+
+    @Test
+    public void shouldShowNextPageFetchedInBackgroundWithoutAskingAgain() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        given(service.listObjectsInBucket("bucket", "")).willReturn(page("a", "b", true));
+        given(service.listObjectsInBucket("bucket", "b")).willReturn(page("c", "", false));
+
+        TableController controller = new TableController(service, new DirectWorker());
+        controller.refreshBuckets();
+        controller.updateSelectedName(0);
+        controller.showObjects(false);
+        controller.showObjects(true);
+
+        verify(service, times(1)).listObjectsInBucket("bucket", "");
+        verify(service, times(1)).listObjectsInBucket("bucket", "b");
+        // back link, a, c
+        assertThat(controller.getModel().getRowCount(), equalTo(3));
+        assertThat(controller.getModel().getNameAt(2), equalTo("c"));
+    }
+
+    @Test
+    public void shouldFetchNextPageAgainAfterRefresh() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        given(service.listObjectsInBucket("bucket", "")).willReturn(page("a", "b", true));
+        given(service.listObjectsInBucket("bucket", "b")).willReturn(page("c", "", false));
+
+        TableController controller = new TableController(service, new DirectWorker());
+        controller.refreshBuckets();
+        controller.updateSelectedName(0);
+        controller.showObjects(false);
+        controller.refreshObjects();
+        controller.showObjects(true);
+
+        verify(service, times(2)).listObjectsInBucket("bucket", "");
+        verify(service, times(2)).listObjectsInBucket("bucket", "b");
+    }
+
+    @Test
+    public void shouldShowUploadedObjectWithoutListingAgain() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        given(service.listObjectsInBucket("bucket", "")).willReturn(page("a", "", true));
+
+        TableController controller = new TableController(service, new DirectWorker(), new RefreshCoalescer(0, 0));
+        controller.refreshBuckets();
+        controller.updateSelectedName(0);
+        controller.showObjects(false);
+        controller.createObject("bucket", "b", new File("b"), null);
+
+        verify(service, times(1)).listObjectsInBucket("bucket", "");
+        // back link, a, b
+        assertThat(controller.getModel().getRowCount(), equalTo(3));
+        assertThat(controller.getModel().getNameAt(2), equalTo("b"));
+    }
+
+    private static S3ObjectList page(String key, String nextMarker, boolean firstPage) {
+        S3Object object = new S3Object(key, 1, System.currentTimeMillis());
+        return new S3ObjectList(List.of(object), nextMarker, firstPage);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.gui;
+
+import com.tomczarniecki.s3.ListingCache;
+import com.tomczarniecki.s3.ListingListener;
+import com.tomczarniecki.s3.ProgressListener;
+import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3DeleteResult;
+import com.tomczarniecki.s3.S3List;
+import com.tomczarniecki.s3.Service;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.swing.event.TreeSelectionEvent;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+import static org.mockito.BDDMockito.willAnswer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TreeControllerTests {
+
+    @Mock(answer = Answers.RETURNS_SMART_NULLS)
+    Service service;
+
+    @Mock
+    ListingCache cache;
+
+    @Test
+    public void shouldFillBucketPageByPageKeepingFoldersAheadOfFiles() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        List<String> seen = new ArrayList<>();
+        TreeController controller = new TreeController(service, new DirectWorker(), new DirectExecutor());
+
+        willAnswer(invocation -> {
+            ListingListener listener = invocation.getArgument(2);
+            TreeNode bucket = bucketNode(controller);
+            listener.pageLoaded(new S3List(List.of("a/"), List.of("a.txt")), false);
+            seen.add(childNames(bucket));
+            listener.pageLoaded(new S3List(List.of("b/"), List.of("b.txt")), true);
+            seen.add(childNames(bucket));
+            return null;
+        }).given(service).listItemsInBucket(eq("bucket"), eq(""), any(ListingListener.class));
+
+        controller.refreshBuckets();
+        controller.refreshObjects("bucket");
+
+        assertThat(seen, equalTo(List.of(
+                "a/,a.txt," + TreeController.LOADING,
+                "a/,b/,a.txt,b.txt")));
+    }
+
+    @Test
+    public void shouldMarkBucketAsEmptyWhenListingHasNothing() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        TreeController controller = new TreeController(service, new DirectWorker(), new DirectExecutor());
+
+        willAnswer(invocation -> {
+            ListingListener listener = invocation.getArgument(2);
+            listener.pageLoaded(new S3List(List.of(), List.of()), true);
+            return null;
+        }).given(service).listItemsInBucket(eq("bucket"), eq(""), any(ListingListener.class));
+
+        controller.refreshBuckets();
+        controller.refreshObjects("bucket");
+
+        assertThat(childNames(bucketNode(controller)), equalTo(TreeController.EMPTY));
+    }
+
+    @Test
+    public void shouldIgnorePagesFromListingThatHasBeenReplaced() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        List<ListingListener> listeners = new ArrayList<>();
+        willAnswer(invocation -> {
+            listeners.add(invocation.getArgument(2));
+            return null;
+        }).given(service).listItemsInBucket(eq("bucket"), eq(""), any(ListingListener.class));
+
+        TreeController controller = new TreeController(service, new DirectWorker(), new DirectExecutor());
+        controller.refreshBuckets();
+        controller.refreshObjects("bucket");
+        listeners.get(0).pageLoaded(new S3List(List.of(), List.of("a.txt")), false);
+        controller.refreshObjects("bucket");
+        listeners.get(1).pageLoaded(new S3List(List.of(), List.of("b.txt")), true);
+        listeners.get(0).pageLoaded(new S3List(List.of(), List.of("c.txt")), true);
+
+        assertThat(childNames(bucketNode(controller)), equalTo("b.txt"));
+    }
+
+    @Test
+    public void shouldReplaceLoadingMarkerWhenListingFails() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        willAnswer(invocation -> {
+            ListingListener listener = invocation.getArgument(2);
+            listener.pageLoaded(new S3List(List.of(), List.of("a.txt")), false);
+            throw new IllegalStateException("connection reset");
+        }).given(service).listItemsInBucket(eq("bucket"), eq(""), any(ListingListener.class));
+
+        TreeController controller = new TreeController(service, new DirectWorker(), new DirectExecutor());
+        controller.refreshBuckets();
+        controller.refreshObjects("bucket");
+
+        assertThat(childNames(bucketNode(controller)), equalTo("a.txt," + TreeController.FAILED));
+    }
+
+    @Test
+    public void shouldInsertUploadedFileIntoListedBucketWithoutListingAgain() {
+        TreeController controller = listedBucket();
+
+        controller.createObject("bucket", "c.txt", null, null);
+
+        assertThat(childNames(bucketNode(controller)), equalTo("a/,b.txt,c.txt,d.txt"));
+        verify(service, times(1)).listItemsInBucket(eq("bucket"), eq(""), any(ListingListener.class));
+    }
+
+    @Test
+    public void shouldCreateFoldersForFirstFileInThem() {
+        TreeController controller = listedBucket();
+
+        controller.createObject("bucket", "x/y/z.txt", null, null);
+
+        TreeNode bucket = bucketNode(controller);
+        assertThat(childNames(bucket), equalTo("a/,x/,b.txt,d.txt"));
+        assertThat(childNames(bucket.getChildAt(1)), equalTo("y/"));
+        assertThat(childNames(bucket.getChildAt(1).getChildAt(0)), equalTo("z.txt"));
+    }
+
+    @Test
+    public void shouldLeaveFolderThatHasNotBeenListedToPickUpUploadWhenOpened() {
+        TreeController controller = listedBucket();
+
+        controller.createObject("bucket", "a/new.txt", null, null);
+
+        assertThat(childNames(bucketNode(controller).getChildAt(0)), equalTo(TreeController.LOADING));
+    }
+
+    @Test
+    public void shouldRemoveDeletedFolderWithoutListingAgain() {
+        given(service.deleteObjectsUnder(eq("bucket"), eq("a/"), any(ProgressListener.class))).willReturn(new S3DeleteResult(Map.of(), false));
+        TreeController controller = listedBucket();
+
+        controller.deleteObjectsUnder("bucket", "a/", (count, length) -> {
+        });
+
+        assertThat(childNames(bucketNode(controller)), equalTo("b.txt,d.txt"));
+        verify(service, times(1)).listItemsInBucket(eq("bucket"), eq(""), any(ListingListener.class));
+    }
+
+    @Test
+    public void shouldClearCachedListingsWhenUserRefreshesSelectedBucket() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        TreeController controller = new TreeController(service, cache, new DirectWorker(), new DirectExecutor(),
+                new RefreshCoalescer(0, 0));
+        controller.refreshBuckets();
+
+        TreePath path = new TreePath(new Object[]{controller.getModel().getRoot(), bucketNode(controller)});
+        controller.valueChanged(new TreeSelectionEvent(this, path, true, null, path));
+        controller.refreshObjects();
+
+        verify(cache).clearCachedListings("bucket");
+    }
+
+    private TreeController listedBucket() {
+        given(service.listAllMyBuckets()).willReturn(List.of(new S3Bucket("bucket")));
+        willAnswer(invocation -> {
+            ListingListener listener = invocation.getArgument(2);
+            listener.pageLoaded(new S3List(List.of("a/"), List.of("b.txt", "d.txt")), true);
+            return null;
+        }).given(service).listItemsInBucket(eq("bucket"), eq(""), any(ListingListener.class));
+
+        TreeController controller = new TreeController(service, new DirectWorker(), new DirectExecutor(),
+                new RefreshCoalescer(0, 0));
+        controller.refreshBuckets();
+        controller.refreshObjects("bucket");
+        return controller;
+    }
+
+    private static TreeNode bucketNode(TreeController controller) {
+        return ((TreeNode) controller.getModel().getRoot()).getChildAt(0);
+    }
+
+    private static String childNames(TreeNode node) {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(node.getChildAt(i));
+        }
+        return names.toString();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTests {
+
+    @Test
+    public void shouldHandOutDirectBuffersOfGivenSize() {
+        BufferPool pool = new BufferPool(2, 64);
+
+        ByteBuffer buffer = pool.acquire();
+
+        assertTrue(buffer.isDirect());
+        assertThat(buffer.capacity(), equalTo(64));
+        assertThat(buffer.remaining(), equalTo(64));
+    }
+
+    @Test
+    public void shouldReuseReleasedBufferClearedOfItsLastUse() {
+        BufferPool pool = new BufferPool(2, 64);
+        ByteBuffer buffer = pool.acquire();
+        buffer.put(new byte[10]).flip();
+
+        pool.release(buffer);
+        ByteBuffer again = pool.acquire();
+
+        assertThat(again, sameInstance(buffer));
+        assertThat(again.position(), equalTo(0));
+        assertThat(again.limit(), equalTo(64));
+    }
+
+    @Test
+    public void shouldAllocateMoreBuffersWhenAllHaveBeenHandedOut() {
+        BufferPool pool = new BufferPool(1, 64);
+        ByteBuffer first = pool.acquire();
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire();
+        ByteBuffer third = pool.acquire();
+
+        assertThat(second, sameInstance(first));
+        assertThat(third, not(sameInstance(first)));
+        assertThat(third.capacity(), equalTo(64));
+    }
+
+    @Test
+    public void shouldKeepNoMoreThanMaxPooledBuffers() {
+        BufferPool pool = new BufferPool(1, 64);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+
+        pool.release(first);
+        pool.release(second); // pool is already full
+
+        assertThat(pool.acquire(), sameInstance(first));
+        ByteBuffer fresh = pool.acquire();
+        assertThat(fresh, not(sameInstance(first)));
+        assertThat(fresh, not(sameInstance(second)));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.tomczarniecki.s3.S3DeleteResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BulkDeleterTests {
+
+    @Mock
+    private AmazonS3 client;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldDeleteKeysInChunksOfOneThousand() {
+        given(client.deleteObjects(any(DeleteObjectsRequest.class))).willReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+        Map<String, String> failures = deleter().delete("bucket", keys(2500));
+
+        assertTrue(failures.isEmpty());
+
+        ArgumentCaptor<DeleteObjectsRequest> requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client, times(3)).deleteObjects(requests.capture());
+        List<Integer> sizes = new ArrayList<>();
+        for (DeleteObjectsRequest request : requests.getAllValues()) {
+            assertThat(request.getBucketName(), equalTo("bucket"));
+            assertTrue(request.getQuiet());
+            sizes.add(request.getKeys().size());
+        }
+        assertThat(sizes, equalTo(List.of(1000, 1000, 500)));
+        assertThat(requests.getAllValues().get(2).getKeys().get(0).getKey(), equalTo("key-2000"));
+    }
+
+    @Test
+    public void shouldReportKeysThatCouldNotBeDeleted() {
+        DeleteError error = new DeleteError();
+        error.setKey("key-1");
+        error.setCode("AccessDenied");
+        error.setMessage("Access Denied");
+        given(client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .willThrow(new MultiObjectDeleteException(List.of(error), Collections.emptyList()));
+
+        Map<String, String> failures = deleter().delete("bucket", keys(3));
+
+        assertThat(failures, equalTo(Map.of("key-1", "AccessDenied: Access Denied")));
+    }
+
+    @Test
+    public void shouldReportEveryKeyInChunkWhenRequestFails() {
+        given(client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .willThrow(new AmazonClientException("Connection reset"));
+
+        Map<String, String> failures = deleter().delete("bucket", keys(2));
+
+        assertThat(failures, equalTo(Map.of("key-0", "Connection reset", "key-1", "Connection reset")));
+    }
+
+    @Test
+    public void shouldReportProgressAsRequestsComplete() {
+        given(client.deleteObjects(any(DeleteObjectsRequest.class))).willReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+        List<String> progress = new ArrayList<>();
+        deleter().delete("bucket", keys(2500).iterator(), (count, length) -> progress.add(count + "/" + length));
+
+        assertThat(progress, equalTo(List.of("1000/2000", "2000/2500", "2500/2500")));
+    }
+
+    @Test
+    public void shouldStopTakingKeysOnceWholeRequestHasFailed() {
+        given(client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .willThrow(new AmazonClientException("Access Denied"));
+
+        Iterator<String> keys = keys(5000).iterator();
+        S3DeleteResult result = deleter().delete("bucket", keys, (count, length) -> {
+        });
+
+        assertTrue(result.isStoppedEarly());
+        assertThat(result.getFailures().size(), equalTo(2000));
+        assertTrue(keys.hasNext());
+        verify(client, times(2)).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    @Test
+    public void shouldKeepGoingWhenOnlySomeKeysInEachRequestFail() {
+        DeleteError error = new DeleteError();
+        error.setKey("key-0");
+        error.setCode("AccessDenied");
+        error.setMessage("Access Denied");
+        given(client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .willThrow(new MultiObjectDeleteException(List.of(error), Collections.emptyList()));
+
+        Iterator<String> keys = keys(5000).iterator();
+        S3DeleteResult result = deleter().delete("bucket", keys, (count, length) -> {
+        });
+
+        assertFalse(result.isStoppedEarly());
+        assertFalse(keys.hasNext());
+        verify(client, times(5)).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    @Test
+    public void shouldTryEveryKeyInCollection() {
+        given(client.deleteObjects(any(DeleteObjectsRequest.class)))
+                .willThrow(new AmazonClientException("Access Denied"));
+
+        Map<String, String> failures = deleter().delete("bucket", keys(5000));
+
+        assertThat(failures.size(), equalTo(5000));
+        verify(client, times(5)).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    private BulkDeleter deleter() {
+        return new BulkDeleter(client, executor, 2);
+    }
+
+    private static List<String> keys(int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add("key-" + i);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+public class DownloadJournalTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldOnlyReportRangesThatHaveNotBeenCompleted() throws Exception {
+        File target = folder.newFile("target.bin");
+
+        DownloadJournal journal = DownloadJournal.open(target, "etag", 100);
+        journal.completed(0, 19);
+        journal.completed(40, 59);
+
+        journal = DownloadJournal.open(target, "etag", 100);
+        assertThat(journal.completedBytes(), equalTo(40L));
+        assertThat(ranges(journal.missingRanges(30)), equalTo("20-39,60-89,90-99"));
+    }
+
+    @Test
+    public void shouldStartAgainWhenObjectHasChanged() throws Exception {
+        File target = folder.newFile("target.bin");
+
+        DownloadJournal journal = DownloadJournal.open(target, "etag", 100);
+        journal.completed(0, 49);
+
+        journal = DownloadJournal.open(target, "other", 100);
+        assertThat(journal.completedBytes(), equalTo(0L));
+        assertThat(ranges(journal.missingRanges(50)), equalTo("0-49,50-99"));
+    }
+
+    @Test
+    public void shouldIgnorePartiallyWrittenEntries() throws Exception {
+        File target = folder.newFile("target.bin");
+        File sidecar = new File(target.getPath() + DownloadJournal.SUFFIX);
+        FileUtils.writeStringToFile(sidecar, "100 etag\n0 49\n50");
+
+        DownloadJournal journal = DownloadJournal.open(target, "etag", 100);
+        assertThat(ranges(journal.missingRanges(100)), equalTo("50-99"));
+    }
+
+    @Test
+    public void shouldRemoveSidecarFileWhenDeleted() throws Exception {
+        File target = folder.newFile("target.bin");
+
+        DownloadJournal journal = DownloadJournal.open(target, "etag", 100);
+        journal.delete();
+
+        assertFalse(new File(target.getPath() + DownloadJournal.SUFFIX).exists());
+    }
+
+    private static String ranges(List<long[]> ranges) {
+        StringBuilder text = new StringBuilder();
+        for (long[] range : ranges) {
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(range[0]).append('-').append(range[1]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileChannelSinkTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BufferPool pool = new BufferPool(1, 16);
+    private final FileChannelSink sink = new FileChannelSink(pool);
+
+    @Test
+    public void shouldWriteEverythingDespiteShortReads() throws Exception {
+        byte[] content = content(100, 0);
+        File target = folder.newFile("target.bin");
+
+        List<Long> counts = new ArrayList<>();
+        long written = write(new ShortReads(content, 3), target, 0, counts);
+
+        assertThat(written, equalTo(100L));
+        assertTrue(Arrays.equals(FileUtils.readFileToByteArray(target), content));
+        // buffers are filled before each write, however little each read returns
+        assertThat(counts, equalTo(List.of(16L, 16L, 16L, 16L, 16L, 16L, 4L)));
+    }
+
+    @Test
+    public void shouldWriteWhatWasReadWhenStreamEndsPartWayThroughBuffer() throws Exception {
+        byte[] content = content(20, 0);
+        File target = folder.newFile("target.bin");
+
+        List<Long> counts = new ArrayList<>();
+        long written = write(new ShortReads(content, 7), target, 0, counts);
+
+        assertThat(written, equalTo(20L));
+        assertThat(counts, equalTo(List.of(16L, 4L)));
+        assertTrue(Arrays.equals(FileUtils.readFileToByteArray(target), content));
+    }
+
+    @Test
+    public void shouldWriteNothingForEmptyStream() throws Exception {
+        File target = folder.newFile("target.bin");
+
+        List<Long> counts = new ArrayList<>();
+        long written = write(new ShortReads(new byte[0], 5), target, 0, counts);
+
+        assertThat(written, equalTo(0L));
+        assertThat(counts, equalTo(List.of()));
+        assertThat(target.length(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldWriteAtGivenPositionLeavingTheRestAlone() throws Exception {
+        byte[] before = content(40, 100);
+        byte[] part = content(20, 0);
+        File target = folder.newFile("target.bin");
+        FileUtils.writeByteArrayToFile(target, before);
+
+        write(new ShortReads(part, 5), target, 10, new ArrayList<>());
+
+        byte[] expected = before.clone();
+        System.arraycopy(part, 0, expected, 10, part.length);
+        assertTrue(Arrays.equals(FileUtils.readFileToByteArray(target), expected));
+    }
+
+    @Test
+    public void shouldGiveBufferBackWhenReadFails() throws Exception {
+        File target = folder.newFile("target.bin");
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        ByteBuffer buffer = pool.acquire();
+        pool.release(buffer);
+
+        try {
+            write(failing, target, 0, new ArrayList<>());
+            fail("expected the write to fail");
+
+        } catch (IOException e) {
+            assertThat(e.getMessage(), equalTo("Connection reset"));
+        }
+
+        assertThat(pool.acquire(), sameInstance(buffer));
+    }
+
+    private long write(InputStream input, File target, long position, List<Long> counts) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            FileChannel channel = file.getChannel();
+            return sink.write(input, channel, position, counts::add);
+        }
+    }
+
+    private static byte[] content(int length, int first) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (first + i);
+        }
+        return content;
+    }
+
+    /**
+     * Never returns more than a few bytes at a time, the way a slow connection does.
+     */
+    private static class ShortReads extends ByteArrayInputStream {
+
+        private final int maxRead;
+
+        ShortReads(byte[] content, int maxRead) {
+            super(content);
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, maxRead));
+        }
+    }
+}
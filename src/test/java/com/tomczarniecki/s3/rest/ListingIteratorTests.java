@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.tomczarniecki.s3.S3Object;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.timeout;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ListingIteratorTests {
+
+    @Mock
+    AmazonS3 client;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        given(client.listObjectsV2(any(ListObjectsV2Request.class))).willAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            String token = request.getContinuationToken();
+            if (token == null) {
+                return page("2", "a", "b");
+            }
+            if (token.equals("2")) {
+                return page("3", "c");
+            }
+            return page(null, "d", "e");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldStreamObjectsFromAllPagesInOrder() {
+        try (Stream<S3Object> objects = ListingIterator.stream(client, executor, "bucket", "")) {
+            List<String> keys = objects.map(S3Object::getKey).collect(Collectors.toList());
+            assertThat(keys, equalTo(List.of("a", "b", "c", "d", "e")));
+        }
+        verify(client, times(3)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void shouldFetchNextPageWhileCurrentPageIsConsumed() {
+        ListingIterator iterator = new ListingIterator(client, executor, "bucket", "prefix/");
+        assertThat(iterator.next().getKey(), equalTo("a"));
+
+        // second page has been asked for, third waits until the second is taken
+        verify(client, timeout(1000).times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+        iterator.close();
+    }
+
+    private static ListObjectsV2Result page(String nextToken, String... keys) {
+        ListObjectsV2Result result = new ListObjectsV2Result();
+        for (String key : keys) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            summary.setLastModified(new Date());
+            result.getObjectSummaries().add(summary);
+        }
+        result.setNextContinuationToken(nextToken);
+        result.setTruncated(nextToken != null);
+        return result;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.tomczarniecki.s3.ProgressListener;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.never;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MultipartUploaderTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private AmazonS3 client;
+
+    @Mock
+    private ProgressListener listener;
+
+    private ExecutorService executor;
+    private File stateDir;
+    private File source;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        stateDir = folder.newFolder("state");
+        source = folder.newFile("source.bin");
+        FileUtils.writeByteArrayToFile(source, new byte[250]);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldUploadOnlyPartsMissingFromEarlierAttempt() throws Exception {
+        UploadJournal journal = UploadJournal.open(stateDir, "bucket", "key", source);
+        journal.started("upload-1", 100);
+        journal.completed(1, "etag-1");
+
+        PartListing listing = new PartListing();
+        listing.setParts(List.of(part(1, "etag-1")));
+        given(client.listParts(any(ListPartsRequest.class))).willReturn(listing);
+        givenPartsUploadOk();
+
+        uploader().upload("bucket", "key", source, new ObjectMetadata(), listener);
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(2)).uploadPart(parts.capture());
+        assertThat(partNumbers(parts.getAllValues()), equalTo(List.of(2, 3)));
+        verify(client, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().getUploadId(), equalTo("upload-1"));
+        assertThat(eTagNumbers(complete.getValue().getPartETags()), equalTo(List.of(1, 2, 3)));
+    }
+
+    @Test
+    public void shouldStartAgainWhenEarlierUploadHasGone() throws Exception {
+        UploadJournal journal = UploadJournal.open(stateDir, "bucket", "key", source);
+        journal.started("upload-1", 100);
+        journal.completed(1, "etag-1");
+
+        AmazonS3Exception noSuchUpload = new AmazonS3Exception("NoSuchUpload");
+        noSuchUpload.setStatusCode(404);
+        given(client.listParts(any(ListPartsRequest.class))).willThrow(noSuchUpload);
+        given(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).willReturn(initiated("upload-2"));
+        givenPartsUploadOk();
+
+        uploader().upload("bucket", "key", source, new ObjectMetadata(), listener);
+
+        verify(client, times(3)).uploadPart(any(UploadPartRequest.class));
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().getUploadId(), equalTo("upload-2"));
+    }
+
+    @Test
+    public void shouldKeepJournalWhenPartFailsAndRemoveItOnceComplete() throws Exception {
+        given(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).willReturn(initiated("upload-1"));
+        given(client.uploadPart(any(UploadPartRequest.class))).willThrow(new AmazonS3Exception("boom"));
+
+        try {
+            uploader().upload("bucket", "key", source, new ObjectMetadata(), listener);
+        } catch (AmazonS3Exception expected) {
+            // carry on
+        }
+        assertThat(UploadJournal.open(stateDir, "bucket", "key", source).getUploadId(), equalTo("upload-1"));
+
+        uploader().forget("bucket");
+        assertFalse(new File(stateDir, "bucket").exists());
+    }
+
+    @Test
+    public void shouldGrowPartSizeWithFileSize() {
+        MultipartUploader uploader = new MultipartUploader(client, executor, stateDir, 8 * FileUtils.ONE_MB);
+
+        assertThat(uploader.partSize(100 * FileUtils.ONE_MB), equalTo(8 * FileUtils.ONE_MB));
+        assertThat(uploader.partSize(100 * FileUtils.ONE_GB), equalTo(107374183L)); // 1000 parts
+    }
+
+    private MultipartUploader uploader() {
+        return new MultipartUploader(client, executor, stateDir, 100);
+    }
+
+    private void givenPartsUploadOk() {
+        given(client.uploadPart(any(UploadPartRequest.class))).willAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+    }
+
+    private static PartSummary part(int partNumber, String eTag) {
+        PartSummary part = new PartSummary();
+        part.setPartNumber(partNumber);
+        part.setETag(eTag);
+        part.setSize(100);
+        return part;
+    }
+
+    private static InitiateMultipartUploadResult initiated(String uploadId) {
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setUploadId(uploadId);
+        return result;
+    }
+
+    private static List<Integer> partNumbers(List<UploadPartRequest> requests) {
+        List<Integer> numbers = new ArrayList<>();
+        for (UploadPartRequest request : requests) {
+            numbers.add(request.getPartNumber());
+        }
+        return numbers;
+    }
+
+    private static List<Integer> eTagNumbers(List<PartETag> eTags) {
+        List<Integer> numbers = new ArrayList<>();
+        for (PartETag eTag : eTags) {
+            numbers.add(eTag.getPartNumber());
+        }
+        return numbers;
+    }
+}
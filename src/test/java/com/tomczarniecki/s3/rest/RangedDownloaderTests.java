@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.never;
+import static org.mockito.BDDMockito.times;
+import static org.mockito.BDDMockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RangedDownloaderTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private AmazonS3 client;
+
+    private ExecutorService executor;
+    private RangedDownloader downloader;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+        // buffers smaller than a part, so that each part takes several writes
+        downloader = new RangedDownloader(client, executor, new FileChannelSink(new BufferPool(3, 16)), 100);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldFetchRangesOfPartSizeWithShorterLastPart() throws Exception {
+        byte[] content = content(250);
+        givenObject(content);
+
+        downloader.download("bucket", "key", "etag", content.length, folder.newFile("target.bin"), (count, length) -> {
+        });
+
+        ArgumentCaptor<GetObjectRequest> requests = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client, times(3)).getObject(requests.capture());
+        List<String> ranges = new ArrayList<>();
+        for (GetObjectRequest request : requests.getAllValues()) {
+            assertThat(request.getBucketName(), equalTo("bucket"));
+            assertThat(request.getKey(), equalTo("key"));
+            assertThat(request.getMatchingETagConstraints(), equalTo(List.of("etag")));
+            ranges.add(request.getRange()[0] + "-" + request.getRange()[1]);
+        }
+        Collections.sort(ranges);
+        assertThat(ranges, equalTo(List.of("0-99", "100-199", "200-249")));
+    }
+
+    @Test
+    public void shouldWriteEachPartAtItsOwnOffset() throws Exception {
+        byte[] content = content(250);
+        givenObject(content);
+        File target = folder.newFile("target.bin");
+
+        downloader.download("bucket", "key", "etag", content.length, target, (count, length) -> {
+        });
+
+        assertTrue(Arrays.equals(FileUtils.readFileToByteArray(target), content));
+        assertFalse(new File(target.getPath() + DownloadJournal.SUFFIX).exists());
+    }
+
+    @Test
+    public void shouldReportProgressAddingUpToLength() throws Exception {
+        byte[] content = content(250);
+        givenObject(content);
+
+        List<Long> counts = Collections.synchronizedList(new ArrayList<>());
+        downloader.download("bucket", "key", "etag", content.length, folder.newFile("target.bin"), (count, length) -> {
+            assertThat(length, equalTo(250L));
+            counts.add(count);
+        });
+
+        assertThat(counts.get(0), equalTo(0L));
+        assertThat(Collections.max(counts), equalTo(250L));
+        // 16 byte buffers: 7 writes for each whole part and 4 for the last one, plus the start
+        assertThat(counts.size(), equalTo(1 + 7 + 7 + 4));
+    }
+
+    @Test
+    public void shouldCreateEmptyFileForEmptyObjectWithoutFetchingAnything() throws Exception {
+        File target = folder.newFile("target.bin");
+        FileUtils.writeStringToFile(target, "left over");
+
+        List<Long> counts = new ArrayList<>();
+        downloader.download("bucket", "key", "etag", 0, target, (count, length) -> counts.add(count));
+
+        assertThat(target.length(), equalTo(0L));
+        assertThat(counts, equalTo(List.of(0L)));
+        verify(client, never()).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void shouldFailWhenObjectChangesDuringDownload() throws Exception {
+        given(client.getObject(any(GetObjectRequest.class))).willReturn(null);
+
+        try {
+            downloader.download("bucket", "key", "etag", 50, folder.newFile("target.bin"), (count, length) -> {
+            });
+            fail("expected the download to fail");
+
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("Object key changed during download"));
+        }
+    }
+
+    @Test
+    public void shouldCancelOtherPartsWhenOnePartFails() throws Exception {
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch secondInterrupted = new CountDownLatch(1);
+        given(client.getObject(any(GetObjectRequest.class))).willAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            if (request.getRange()[0] == 0) {
+                secondStarted.await(5, TimeUnit.SECONDS);
+                throw new AmazonClientException("Connection reset");
+            }
+            secondStarted.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                secondInterrupted.countDown();
+            }
+            return null;
+        });
+
+        try {
+            downloader.download("bucket", "key", "etag", 200, folder.newFile("target.bin"), (count, length) -> {
+            });
+            fail("expected the download to fail");
+
+        } catch (AmazonClientException e) {
+            assertThat(e.getMessage(), equalTo("Connection reset"));
+        }
+        assertTrue(secondInterrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    private void givenObject(byte[] content) {
+        given(client.getObject(any(GetObjectRequest.class))).willAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            int start = (int) request.getRange()[0];
+            int end = (int) request.getRange()[1];
+            S3Object object = new S3Object();
+            object.setObjectContent(new S3ObjectInputStream(
+                    new ByteArrayInputStream(content, start, end - start + 1), null));
+            return object;
+        });
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+}
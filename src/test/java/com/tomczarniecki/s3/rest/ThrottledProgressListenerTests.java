@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021, Thomas Czarniecki
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *  * Neither the name of S3DropBox, Thomas Czarniecki, tomczarniecki.com nor
+ *    the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tomczarniecki.s3.rest;
+
+import com.tomczarniecki.s3.ProgressListener;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ThrottledProgressListenerTests {
+
+    @Test
+    public void shouldOnlyPassOnUpdatesWhenEnoughBytesHaveBeenProcessed() {
+        ProgressListener delegate = mock(ProgressListener.class);
+        ThrottledProgressListener listener = new ThrottledProgressListener(delegate, 100, 60000);
+
+        listener.processed(10, 1000);
+        listener.processed(50, 1000);
+        listener.processed(110, 1000);
+        listener.processed(200, 1000);
+
+        verify(delegate).processed(10, 1000);
+        verify(delegate, never()).processed(50, 1000);
+        verify(delegate).processed(110, 1000);
+        verify(delegate, never()).processed(200, 1000);
+    }
+
+    @Test
+    public void shouldAlwaysPassOnCompletion() {
+        ProgressListener delegate = mock(ProgressListener.class);
+        ThrottledProgressListener listener = new ThrottledProgressListener(delegate, 100, 60000);
+
+        listener.processed(10, 20);
+        listener.processed(20, 20);
+
+        verify(delegate).processed(20, 20);
+    }
+
+    @Test
+    public void shouldIgnoreOutOfOrderUpdates() {
+        ProgressListener delegate = mock(ProgressListener.class);
+        ThrottledProgressListener listener = new ThrottledProgressListener(delegate, 1, 0);
+
+        listener.processed(500, 1000);
+        listener.processed(400, 1000);
+
+        verify(delegate).processed(500, 1000);
+        verify(delegate, never()).processed(400, 1000);
+    }
+}
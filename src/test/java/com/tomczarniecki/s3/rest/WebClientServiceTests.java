@@ -118,6 +118,7 @@ public class WebClientServiceTests {
         service.createObject(bucketName, file.getName(), file, listener);
 
         assertTrue("Object should exist", service.objectExists(bucketName, file.getName()));
+        assertThat(service.listObjectKeys(bucketName, ""), hasItem(file.getName()));
         assertThat(service.listObjectsInBucket(bucketName, "").getObjects(), hasItem(object(file.getName())));
 
         S3ObjectList objects = service.listObjectsInBucket(bucketName, "");
@@ -28,8 +28,10 @@
  */
 package com.tomczarniecki.s3.tests;
 
+import com.tomczarniecki.s3.ListingListener;
 import com.tomczarniecki.s3.ProgressListener;
 import com.tomczarniecki.s3.S3Bucket;
+import com.tomczarniecki.s3.S3DeleteResult;
 import com.tomczarniecki.s3.S3List;
 import com.tomczarniecki.s3.S3Object;
 import com.tomczarniecki.s3.S3ObjectList;
@@ -47,8 +49,15 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 
 public class LocalService implements Service {
 
@@ -97,16 +106,31 @@ public class LocalService implements Service {
         FileFilter filter = FileFileFilter.FILE;
         //noinspection ConstantConditions
         for (File file : bucketFile(bucketName).listFiles(filter)) {
-            objects.add(new S3Object(file.getName(), file.length(), new LocalDateTime(file.lastModified())));
+            objects.add(new S3Object(file.getName(), file.length(), file.lastModified()));
         }
         return new S3ObjectList(objects, "", true);
     }
 
+    @Override
+    public Stream<S3Object> streamObjectsInBucket(String bucketName, String prefix) {
+        List<S3Object> objects = new ArrayList<>();
+        for (String key : new TreeSet<>(listObjectKeys(bucketName, prefix))) {
+            File file = objectFile(bucketName, key);
+            objects.add(new S3Object(key, file.length(), file.lastModified()));
+        }
+        return objects.stream();
+    }
+
     @Override
     public S3List listItemsInBucket(String bucketName, String prefix) {
         throw new NotImplementedException();
     }
 
+    @Override
+    public void listItemsInBucket(String bucketName, String prefix, ListingListener listener) {
+        listener.pageLoaded(listItemsInBucket(bucketName, prefix), true);
+    }
+
     @Override
     public S3Object getObject(String bucketName, String objectKey) {
         throw new NotImplementedException();
@@ -116,6 +140,19 @@ public class LocalService implements Service {
         return objectFile(bucketName, objectKey).isFile();
     }
 
+    public Set<String> listObjectKeys(String bucketName, String prefix) {
+        File bucket = bucketFile(bucketName);
+        Set<String> keys = new HashSet<>();
+        Collection<File> files = FileUtils.listFiles(bucket, null, true);
+        for (File file : files) {
+            String key = bucket.toURI().relativize(file.toURI()).getPath();
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
     public void createObject(String bucketName, String objectKey, File source, ProgressListener listener) {
         try {
             FileUtils.copyFile(source, objectFile(bucketName, objectKey));
@@ -142,6 +179,25 @@ public class LocalService implements Service {
         Validate.isTrue(file.delete(), "Cannot delete ", file);
     }
 
+    @Override
+    public Map<String, String> deleteObjects(String bucketName, Collection<String> objectKeys) {
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (String objectKey : objectKeys) {
+            if (!objectFile(bucketName, objectKey).delete()) {
+                failures.put(objectKey, "Cannot delete");
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public S3DeleteResult deleteObjectsUnder(String bucketName, String prefix, ProgressListener listener) {
+        Set<String> objectKeys = listObjectKeys(bucketName, prefix);
+        Map<String, String> failures = deleteObjects(bucketName, objectKeys);
+        listener.processed(objectKeys.size(), objectKeys.size());
+        return new S3DeleteResult(failures, false);
+    }
+
     private File bucketFile(String bucketName) {
         return new File(root, bucketName);
     }
@@ -28,6 +28,7 @@
  */
 package com.tomczarniecki.s3.tests;
 
+import com.tomczarniecki.s3.ListingCache;
 import com.tomczarniecki.s3.PreferenceSetter;
 import com.tomczarniecki.s3.gui.DropBox;
 
@@ -37,7 +38,7 @@ public class TestMain {
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
-            DropBox box = new DropBox(new LocalService(), new PreferenceSetter());
+            DropBox box = new DropBox(new LocalService(), ListingCache.NONE, new PreferenceSetter());
             box.showBuckets();
         });
     }